@@ -0,0 +1,34 @@
+package com.example.GoogleContacts_Cultura.DTO;
+
+import java.util.List;
+
+// Messages one conversation missed since the client's last-seen sequence, in sequence order.
+// When hasMore is set, sync again with lastSequence to fetch the rest.
+public class ConversationSync {
+
+    private final Long peerId;
+    private final List<MessageDTO> messages;
+    private final boolean hasMore;
+
+    public ConversationSync(Long peerId, List<MessageDTO> messages, boolean hasMore) {
+        this.peerId = peerId;
+        this.messages = messages;
+        this.hasMore = hasMore;
+    }
+
+    public Long getPeerId() {
+        return peerId;
+    }
+
+    public List<MessageDTO> getMessages() {
+        return messages;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public Long getLastSequence() {
+        return messages.isEmpty() ? null : messages.get(messages.size() - 1).getSequence();
+    }
+}
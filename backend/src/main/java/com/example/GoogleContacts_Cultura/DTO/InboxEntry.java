@@ -0,0 +1,75 @@
+package com.example.GoogleContacts_Cultura.DTO;
+
+import com.example.GoogleContacts_Cultura.model.Role;
+
+import java.time.LocalDateTime;
+
+// One inbox row: a conversation partner, the latest message with them and how many of their messages are unread
+public class InboxEntry {
+
+    private final Long peerId;
+    private final String peerUsername;
+    private final String peerRole;
+    private final String peerProfilePicture;
+    private final Long lastMessageId;
+    private final String lastMessage;
+    private final LocalDateTime lastMessageTimestamp;
+    private final Long lastSenderId;
+    private final int unreadCount;
+    private final long lastSequence;
+
+    public InboxEntry(Long peerId, String peerUsername, Role peerRole, String peerProfilePicture,
+                      Long lastMessageId, String lastMessage, LocalDateTime lastMessageTimestamp,
+                      Long lastSenderId, int unreadCount, long lastSequence) {
+        this.peerId = peerId;
+        this.peerUsername = peerUsername;
+        this.peerRole = peerRole != null ? peerRole.toString() : "UNKNOWN";
+        this.peerProfilePicture = peerProfilePicture;
+        this.lastMessageId = lastMessageId;
+        this.lastMessage = lastMessage;
+        this.lastMessageTimestamp = lastMessageTimestamp;
+        this.lastSenderId = lastSenderId;
+        this.unreadCount = unreadCount;
+        this.lastSequence = lastSequence;
+    }
+
+    public Long getPeerId() {
+        return peerId;
+    }
+
+    public String getPeerUsername() {
+        return peerUsername;
+    }
+
+    public String getPeerRole() {
+        return peerRole;
+    }
+
+    public String getPeerProfilePicture() {
+        return peerProfilePicture;
+    }
+
+    public Long getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public String getLastMessage() {
+        return lastMessage;
+    }
+
+    public LocalDateTime getLastMessageTimestamp() {
+        return lastMessageTimestamp;
+    }
+
+    public Long getLastSenderId() {
+        return lastSenderId;
+    }
+
+    public int getUnreadCount() {
+        return unreadCount;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+}
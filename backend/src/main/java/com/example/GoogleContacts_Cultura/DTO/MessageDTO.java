@@ -2,6 +2,7 @@ package com.example.GoogleContacts_Cultura.DTO;
 
 import com.example.GoogleContacts_Cultura.entity.MessageEntity;
 import com.example.GoogleContacts_Cultura.entity.UserEntity;
+import com.example.GoogleContacts_Cultura.model.Role;
 
 import java.time.LocalDateTime;
 
@@ -20,6 +21,7 @@ public class MessageDTO {
 
     private String content;
     private LocalDateTime timestamp;
+    private Long sequence; // per-conversation, gap-free; clients resume with /api/messages/sync
 
     // Constructor for MessageDTO with UserEntity
     public MessageDTO(MessageEntity messageEntity, UserEntity sender, UserEntity receiver) {
@@ -41,6 +43,33 @@ public class MessageDTO {
 
         this.content = messageEntity.getContent();
         this.timestamp = messageEntity.getTimestamp();
+        this.sequence = messageEntity.getSequence();
+    }
+
+    // Used by the JPQL constructor projections in MessageRepo: one joined row per message, no entity loading
+    public MessageDTO(Long messageId,
+                      Long senderId, String senderUsername, String senderEmail, Role senderRole,
+                      Long receiverId, String receiverUsername, String receiverEmail, Role receiverRole,
+                      String content, LocalDateTime timestamp, Long sequence) {
+        this.messageId = messageId;
+
+        if (senderId != null) {
+            this.senderId = senderId;
+            this.senderUsername = senderUsername;
+            this.senderEmail = senderEmail;
+            this.senderRole = senderRole != null ? senderRole.toString() : "UNKNOWN";
+        }
+
+        if (receiverId != null) {
+            this.receiverId = receiverId;
+            this.receiverUsername = receiverUsername;
+            this.receiverEmail = receiverEmail;
+            this.receiverRole = receiverRole != null ? receiverRole.toString() : "UNKNOWN";
+        }
+
+        this.content = content;
+        this.timestamp = timestamp;
+        this.sequence = sequence;
     }
 
     // Getters and Setters
@@ -132,6 +161,14 @@ public class MessageDTO {
         this.timestamp = timestamp;
     }
 
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(Long sequence) {
+        this.sequence = sequence;
+    }
+
     @Override
     public String toString() {
         return "MessageDTO{" +
@@ -146,6 +183,7 @@ public class MessageDTO {
                 ", receiverRole='" + receiverRole + '\'' +
                 ", content='" + content + '\'' +
                 ", timestamp=" + timestamp +
+                ", sequence=" + sequence +
                 '}';
     }
 }
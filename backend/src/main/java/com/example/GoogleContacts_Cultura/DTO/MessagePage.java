@@ -0,0 +1,40 @@
+package com.example.GoogleContacts_Cultura.DTO;
+
+import java.util.List;
+
+// One window of a conversation, always in chronological order.
+// Scroll up with ?before=<oldestMessageId>, catch up with ?after=<newestMessageId>.
+public class MessagePage {
+
+    private List<MessageDTO> items;
+    private boolean hasMore; // more messages exist beyond this page in the requested direction
+
+    public MessagePage(List<MessageDTO> items, boolean hasMore) {
+        this.items = items;
+        this.hasMore = hasMore;
+    }
+
+    public List<MessageDTO> getItems() {
+        return items;
+    }
+
+    public void setItems(List<MessageDTO> items) {
+        this.items = items;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public Long getOldestMessageId() {
+        return items.isEmpty() ? null : items.get(0).getMessageId();
+    }
+
+    public Long getNewestMessageId() {
+        return items.isEmpty() ? null : items.get(items.size() - 1).getMessageId();
+    }
+}
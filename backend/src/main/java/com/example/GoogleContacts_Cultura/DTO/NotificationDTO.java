@@ -3,18 +3,32 @@ package com.example.GoogleContacts_Cultura.DTO;
 import java.time.LocalDateTime;
 
 public class NotificationDTO {
+    private Long id; // notification id; clients send the last one they saw to replay what they missed
     private String message;
     private String type;
     private LocalDateTime timestamp;
 
     // Constructor
     public NotificationDTO(String message, String type, LocalDateTime timestamp) {
+        this(null, message, type, timestamp);
+    }
+
+    public NotificationDTO(Long id, String message, String type, LocalDateTime timestamp) {
+        this.id = id;
         this.message = message;
         this.type = type;
         this.timestamp = timestamp;
     }
 
     // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
     public String getMessage() {
         return message;
     }
@@ -0,0 +1,37 @@
+package com.example.GoogleContacts_Cultura.DTO;
+
+import com.example.GoogleContacts_Cultura.entity.NotificationEntity;
+
+import java.util.List;
+
+// One page of a user's notifications, newest first. Ask for the next one with ?cursor=<nextCursor>.
+public class NotificationPage {
+
+    private List<NotificationEntity> items;
+    private String nextCursor; // null when there are no more pages
+
+    public NotificationPage(List<NotificationEntity> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<NotificationEntity> getItems() {
+        return items;
+    }
+
+    public void setItems(List<NotificationEntity> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return nextCursor != null;
+    }
+}
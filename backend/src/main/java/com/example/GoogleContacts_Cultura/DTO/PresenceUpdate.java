@@ -0,0 +1,29 @@
+package com.example.GoogleContacts_Cultura.DTO;
+
+import java.time.LocalDateTime;
+
+// Online state of one user: pushed on /topic/presence/{userId} when it changes, returned by GET /api/presence
+public class PresenceUpdate {
+
+    private final Long userId;
+    private final boolean online;
+    private final LocalDateTime lastSeen; // null if not seen since this node started
+
+    public PresenceUpdate(Long userId, boolean online, LocalDateTime lastSeen) {
+        this.userId = userId;
+        this.online = online;
+        this.lastSeen = lastSeen;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public boolean isOnline() {
+        return online;
+    }
+
+    public LocalDateTime getLastSeen() {
+        return lastSeen;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.GoogleContacts_Cultura.DTO;
+
+import com.example.GoogleContacts_Cultura.model.TaskEventType;
+import com.example.GoogleContacts_Cultura.model.TaskStatus;
+
+import java.time.LocalDateTime;
+
+// One change to the task feed, pushed on /topic/tasks and /topic/tasks/{category}
+public class TaskDeltaEvent {
+
+    private final TaskEventType type;
+    private final long version;         // monotonically increasing feed version, used to resume
+    private final Long taskId;
+    private final TaskStatus previousStatus; // null for CREATED
+    private final TaskSummary task;      // state after the change (last known state for DELETED)
+    private final LocalDateTime timestamp;
+
+    public TaskDeltaEvent(TaskEventType type, long version, Long taskId, TaskStatus previousStatus, TaskSummary task, LocalDateTime timestamp) {
+        this.type = type;
+        this.version = version;
+        this.taskId = taskId;
+        this.previousStatus = previousStatus;
+        this.task = task;
+        this.timestamp = timestamp;
+    }
+
+    public TaskEventType getType() {
+        return type;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Long getTaskId() {
+        return taskId;
+    }
+
+    public TaskStatus getPreviousStatus() {
+        return previousStatus;
+    }
+
+    public TaskSummary getTask() {
+        return task;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+}
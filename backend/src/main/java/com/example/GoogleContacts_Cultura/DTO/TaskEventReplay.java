@@ -0,0 +1,29 @@
+package com.example.GoogleContacts_Cultura.DTO;
+
+import java.util.List;
+
+// Response of /api/task/events?since=: the missed deltas, or resyncRequired when they are no longer buffered
+public class TaskEventReplay {
+
+    private final long currentVersion;
+    private final boolean resyncRequired;
+    private final List<TaskDeltaEvent> events;
+
+    public TaskEventReplay(long currentVersion, boolean resyncRequired, List<TaskDeltaEvent> events) {
+        this.currentVersion = currentVersion;
+        this.resyncRequired = resyncRequired;
+        this.events = events;
+    }
+
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+
+    public boolean isResyncRequired() {
+        return resyncRequired;
+    }
+
+    public List<TaskDeltaEvent> getEvents() {
+        return events;
+    }
+}
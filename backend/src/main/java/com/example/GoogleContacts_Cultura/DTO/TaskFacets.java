@@ -0,0 +1,25 @@
+package com.example.GoogleContacts_Cultura.DTO;
+
+import com.example.GoogleContacts_Cultura.model.Category;
+
+import java.util.Map;
+
+// Task counts per category and status, for the category chips and the admin dashboard
+public class TaskFacets {
+
+    private final Map<Category, Map<String, Long>> counts;
+    private final Map<String, Long> totalsByStatus;
+
+    public TaskFacets(Map<Category, Map<String, Long>> counts, Map<String, Long> totalsByStatus) {
+        this.counts = counts;
+        this.totalsByStatus = totalsByStatus;
+    }
+
+    public Map<Category, Map<String, Long>> getCounts() {
+        return counts;
+    }
+
+    public Map<String, Long> getTotalsByStatus() {
+        return totalsByStatus;
+    }
+}
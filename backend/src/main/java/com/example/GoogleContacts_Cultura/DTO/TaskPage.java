@@ -0,0 +1,34 @@
+package com.example.GoogleContacts_Cultura.DTO;
+
+import java.util.List;
+
+public class TaskPage<T> {
+
+    private List<T> items;
+    private String nextCursor; // null when there are no more pages
+
+    public TaskPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public void setItems(List<T> items) {
+        this.items = items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isHasMore() {
+        return nextCursor != null;
+    }
+}
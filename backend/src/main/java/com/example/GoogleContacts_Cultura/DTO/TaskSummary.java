@@ -0,0 +1,109 @@
+package com.example.GoogleContacts_Cultura.DTO;
+
+import com.example.GoogleContacts_Cultura.entity.TaskEntity;
+import com.example.GoogleContacts_Cultura.entity.UserEntity;
+import com.example.GoogleContacts_Cultura.model.Category;
+import com.example.GoogleContacts_Cultura.model.TaskStatus;
+
+import java.time.LocalDateTime;
+
+// Read model for task lists. Built straight from a JPQL constructor expression so list
+// endpoints never load full UserEntity rows (bio, profile picture, password hash, ...)
+public class TaskSummary {
+
+    private Long id;
+    private String title;
+    private String description;
+    private Category category;
+    private TaskStatus status;
+    private LocalDateTime timestamp;
+    private Participant user;       // poster, same JSON shape as TaskEntity.user for existing clients
+    private Participant acceptedBy; // null until the task is accepted
+    private String imageUrl;
+
+    public TaskSummary(Long id, String title, String description, Category category, TaskStatus status,
+                       LocalDateTime timestamp, Long posterId, String posterUsername,
+                       Long acceptorId, String acceptorUsername, String imageUrl) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.category = category;
+        this.status = status;
+        this.timestamp = timestamp;
+        this.user = posterId != null ? new Participant(posterId, posterUsername) : null;
+        this.acceptedBy = acceptorId != null ? new Participant(acceptorId, acceptorUsername) : null;
+        this.imageUrl = imageUrl;
+    }
+
+    public static TaskSummary from(TaskEntity task) {
+        UserEntity poster = task.getUser();
+        UserEntity acceptor = task.getAcceptedBy();
+        return new TaskSummary(
+                task.getId(),
+                task.getTitle(),
+                task.getDescription(),
+                task.getCategory(),
+                task.getStatus(),
+                task.getTimestamp(),
+                poster != null ? poster.getId() : null,
+                poster != null ? poster.getUsername() : null,
+                acceptor != null ? acceptor.getId() : null,
+                acceptor != null ? acceptor.getUsername() : null,
+                task.getImageUrl()
+        );
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Category getCategory() {
+        return category;
+    }
+
+    public TaskStatus getStatus() {
+        return status;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public Participant getUser() {
+        return user;
+    }
+
+    public Participant getAcceptedBy() {
+        return acceptedBy;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public static class Participant {
+        private final Long id;
+        private final String username;
+
+        public Participant(Long id, String username) {
+            this.id = id;
+            this.username = username;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.GoogleContacts_Cultura.DTO;
+
+// Sent by a client to /app/typing as {receiverId, typing}; delivered to the receiver on /topic/typing/{receiverId}
+// with senderId filled in by the server. At most one update per conversation per coalescing interval.
+public class TypingUpdate {
+
+    private Long senderId;
+    private Long receiverId;
+    private boolean typing;
+
+    public TypingUpdate() {}
+
+    public TypingUpdate(Long senderId, Long receiverId, boolean typing) {
+        this.senderId = senderId;
+        this.receiverId = receiverId;
+        this.typing = typing;
+    }
+
+    public Long getSenderId() {
+        return senderId;
+    }
+
+    public void setSenderId(Long senderId) {
+        this.senderId = senderId;
+    }
+
+    public Long getReceiverId() {
+        return receiverId;
+    }
+
+    public void setReceiverId(Long receiverId) {
+        this.receiverId = receiverId;
+    }
+
+    public boolean isTyping() {
+        return typing;
+    }
+
+    public void setTyping(boolean typing) {
+        this.typing = typing;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.GoogleContacts_Cultura.DTO;
+
+import java.time.LocalDateTime;
+
+// A notification as one user sees it: direct notifications carry their own read flag, broadcasts the user's
+// entry in the broadcast read-state bitmap
+public class UserNotification {
+
+    private final Long id;
+    private final String message;
+    private final String type;
+    private final LocalDateTime timestamp;
+    private final boolean read;
+    private final boolean broadcast;
+
+    public UserNotification(Long id, String message, String type, LocalDateTime timestamp, boolean read, boolean broadcast) {
+        this.id = id;
+        this.message = message;
+        this.type = type;
+        this.timestamp = timestamp;
+        this.read = read;
+        this.broadcast = broadcast;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public boolean isRead() {
+        return read;
+    }
+
+    public boolean isBroadcast() {
+        return broadcast;
+    }
+}
@@ -1,13 +1,29 @@
 package com.example.GoogleContacts_Cultura;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 @SpringBootApplication
+@EnableScheduling
 public class GoogleContactsCulturaApplication {
 
 	public static void main(String[] args) {
 		SpringApplication.run(GoogleContactsCulturaApplication.class, args);
 	}
 
+	// Picked up by @Scheduled under this name. With a single thread, a long outbox drain would hold back the
+	// typing flush and the presence sweep.
+	@Bean(name = "taskScheduler")
+	public ThreadPoolTaskScheduler taskScheduler(@Value("${collaboraid.scheduling.pool-size:4}") int poolSize) {
+		ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+		scheduler.setPoolSize(Math.max(1, poolSize));
+		scheduler.setThreadNamePrefix("scheduling-");
+		scheduler.setWaitForTasksToCompleteOnShutdown(true);
+		return scheduler;
+	}
+
 }
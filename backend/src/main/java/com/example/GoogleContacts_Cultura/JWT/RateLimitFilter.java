@@ -0,0 +1,74 @@
+package com.example.GoogleContacts_Cultura.JWT;
+
+import com.example.GoogleContacts_Cultura.model.RateLimitPolicy;
+import com.example.GoogleContacts_Cultura.service.RateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// Applies RateLimiter to the expensive REST routes, keyed by the user id in the JWT (client address otherwise).
+// Rejected requests get 429 with Retry-After before any controller, database or OpenAI work happens.
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter rateLimiter;
+    private final JwtUtil jwtUtil;
+
+    public RateLimitFilter(RateLimiter rateLimiter, JwtUtil jwtUtil) {
+        this.rateLimiter = rateLimiter;
+        this.jwtUtil = jwtUtil;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RateLimitPolicy policy = policyFor(request);
+        if (policy != null) {
+            long wait = rateLimiter.tryAcquire(policy, clientKey(request));
+            if (wait > 0) {
+                long retryAfter = RateLimiter.retryAfterSeconds(wait);
+                response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+                response.setContentType("text/plain;charset=UTF-8");
+                response.getWriter().write("Too many requests, retry in " + retryAfter + "s");
+                return;
+            }
+        }
+        chain.doFilter(request, response);
+    }
+
+    private static RateLimitPolicy policyFor(HttpServletRequest request) {
+        if (!"POST".equals(request.getMethod())) {
+            return null;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return switch (path) {
+            case "/api/messages/send", "/api/messages/send-authenticated" -> RateLimitPolicy.CHAT;
+            case "/api/task" -> RateLimitPolicy.TASK_CREATE;
+            case "/api/livechat/ask-ai", "/api/livechat/ask-ai/public" -> RateLimitPolicy.AI;
+            default -> null;
+        };
+    }
+
+    private long clientKey(HttpServletRequest request) {
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            try {
+                Long userId = jwtUtil.extractClaim(authHeader.substring(7), claims -> claims.get("id", Long.class));
+                if (userId != null) {
+                    return userId;
+                }
+            } catch (RuntimeException e) {
+                // invalid or expired token: the request fails authentication later, limit it by address meanwhile
+            }
+        }
+        return RateLimiter.anonymousKey(request.getRemoteAddr());
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.GoogleContacts_Cultura.controller;
 
+import com.example.GoogleContacts_Cultura.DTO.ConversationSync;
+import com.example.GoogleContacts_Cultura.DTO.InboxEntry;
 import com.example.GoogleContacts_Cultura.DTO.MessageDTO;
 import com.example.GoogleContacts_Cultura.DTO.MessageInputDTO;
 import com.example.GoogleContacts_Cultura.JWT.JwtUtil;
@@ -8,13 +10,14 @@ import com.example.GoogleContacts_Cultura.entity.UserEntity;
 import com.example.GoogleContacts_Cultura.repository.MessageRepo;
 import com.example.GoogleContacts_Cultura.service.MessageService;
 import com.example.GoogleContacts_Cultura.service.UserService;
+import com.example.GoogleContacts_Cultura.websocket.MessageBus;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -24,15 +27,15 @@ import java.util.stream.Collectors;
 public class MessageController {
 
     private final MessageService messageService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final MessageBus messageBus;
     private final JwtUtil jwtUtil;
     private final UserService userService;
     private final MessageRepo messageRepository;
 
     @Autowired
-    public MessageController(MessageService messageService, SimpMessagingTemplate messagingTemplate, JwtUtil jwtUtil, UserService userService, MessageRepo messageRepository) {
+    public MessageController(MessageService messageService, MessageBus messageBus, JwtUtil jwtUtil, UserService userService, MessageRepo messageRepository) {
         this.messageService = messageService;
-        this.messagingTemplate = messagingTemplate;
+        this.messageBus = messageBus;
         this.jwtUtil = jwtUtil;
         this.userService = userService;
         this.messageRepository = messageRepository;
@@ -77,18 +80,18 @@ public class MessageController {
         UserEntity receiver = userService.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        List<MessageEntity> receivedMessages = messageRepository.findByReceiverId(receiver.getId());
-
-        return receivedMessages.stream()
-                .map(message -> new MessageDTO(message, message.getSender(), receiver))
-                .collect(Collectors.toList());
+        return messageService.getMessagesReceivedByUser(receiver.getId());
     }
 
 
 
+    // Without before/after/limit this returns the whole conversation (legacy clients); with any of them, one page
     @GetMapping("/conversation/user-authenticated/{receiverId}")
-    public List<MessageDTO> getConversationWithReceiver(
+    public ResponseEntity<?> getConversationWithReceiver(
             @PathVariable Long receiverId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit,
             HttpServletRequest request
     ) {
         String authHeader = request.getHeader("Authorization");
@@ -101,8 +104,45 @@ public class MessageController {
         UserEntity sender = userService.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("Sender not found"));
 
+        if (before != null || after != null || limit != null) {
+            return ResponseEntity.ok(messageService.getConversationPage(sender.getId(), receiverId, before, after, limit));
+        }
         // Fetch the messages between the authenticated sender and the receiver
-        return messageService.getMessagesBetweenUsersWithToken(sender.getId(), receiverId);
+        return ResponseEntity.ok(messageService.getMessagesBetweenUsersWithToken(sender.getId(), receiverId));
+    }
+
+    // One row per conversation partner: last message, its timestamp and the unread count
+    @GetMapping("/inbox")
+    public List<InboxEntry> getInbox(HttpServletRequest request) {
+        return messageService.getInbox(authenticatedUser(request).getId());
+    }
+
+    // Clears the unread count of the conversation with peerId for the authenticated user
+    @PutMapping("/inbox/{peerId}/read")
+    public ResponseEntity<Void> markConversationRead(@PathVariable Long peerId, HttpServletRequest request) {
+        messageService.markConversationRead(authenticatedUser(request).getId(), peerId);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Gap-free resume after reconnect: since=peerId:lastSeenSequence,... returns only the messages after each.
+    // Conversations the client has never seen show up in /inbox with their lastSequence; sync them from 0.
+    @GetMapping("/sync")
+    public List<ConversationSync> sync(@RequestParam(required = false) String since,
+                                       @RequestParam(required = false) Integer limit,
+                                       HttpServletRequest request) {
+        return messageService.syncSince(authenticatedUser(request).getId(), since, limit);
+    }
+
+    private UserEntity authenticatedUser(HttpServletRequest request) {
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            throw new RuntimeException("Missing or invalid Authorization header");
+        }
+
+        String token = authHeader.substring(7);
+        String email = jwtUtil.extractUsername(token);
+        return userService.findByEmail(email)
+                .orElseThrow(() -> new RuntimeException("User not found"));
     }
 
     // WebSocket handler for real-time messaging
@@ -117,14 +157,14 @@ public class MessageController {
 
         // Log sending actions
         System.out.println("Sending message to receiver: " + messageEntity.getReceiver().getId());
-        messagingTemplate.convertAndSend(
+        messageBus.convertAndSend(
                 "/topic/messages/" + messageEntity.getReceiver().getId(),
                 dto
         );
 
         // Optionally send the message to the sender's topic as well
         System.out.println("Sending message to sender: " + messageEntity.getSender().getId());
-        messagingTemplate.convertAndSend(
+        messageBus.convertAndSend(
                 "/topic/messages/" + messageEntity.getSender().getId(),
                 dto
         );
@@ -176,8 +216,14 @@ public class MessageController {
 
     // Get messages between two users
     @GetMapping("/conversation/user/{senderId}/{receiverId}")
-    public List<MessageDTO> getMessagesBetweenUsers(@PathVariable Long senderId, @PathVariable Long receiverId) {
-        return messageService.getMessagesBetweenUsers(senderId, receiverId);
+    public ResponseEntity<?> getMessagesBetweenUsers(@PathVariable Long senderId, @PathVariable Long receiverId,
+                                          @RequestParam(required = false) Long before,
+                                          @RequestParam(required = false) Long after,
+                                          @RequestParam(required = false) Integer limit) {
+        if (before != null || after != null || limit != null) {
+            return ResponseEntity.ok(messageService.getUserConversationPage(senderId, receiverId, before, after, limit));
+        }
+        return ResponseEntity.ok(messageService.getMessagesBetweenUsers(senderId, receiverId));
     }
 
     // Get messages between user and admin (USER -> ADMIN)
@@ -194,8 +240,15 @@ public class MessageController {
 
     // Get full conversation between admin and user
     @GetMapping("/conversation/{adminId}/{userId}")
-    public List<MessageDTO> getFullConversation(@PathVariable Long adminId, @PathVariable Long userId) {
-        return messageService.getFullConversationBetween(adminId, userId);
+    public ResponseEntity<?> getFullConversation(@PathVariable Long adminId, @PathVariable Long userId,
+                                      @RequestParam(required = false) Long before,
+                                      @RequestParam(required = false) Long after,
+                                      @RequestParam(required = false) Integer limit) {
+        if (before != null || after != null || limit != null) {
+            return ResponseEntity.ok(messageService.getConversationPage(adminId, userId, before, after, limit));
+        }
+        return ResponseEntity.ok(messageService.getFullConversationBetween(adminId, userId));
+        // http://localhost:8080/api/messages/conversation/1/2?limit=50&before=1234
     }
 
 
@@ -1,15 +1,19 @@
 package com.example.GoogleContacts_Cultura.controller;
 
+import com.example.GoogleContacts_Cultura.DTO.NotificationDTO;
+import com.example.GoogleContacts_Cultura.DTO.UserNotification;
 import com.example.GoogleContacts_Cultura.JWT.JwtUtil;
 import com.example.GoogleContacts_Cultura.entity.NotificationEntity;
 import com.example.GoogleContacts_Cultura.entity.UserEntity;
 import com.example.GoogleContacts_Cultura.service.NotificationService;
 import com.example.GoogleContacts_Cultura.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/notifications")
@@ -51,25 +55,61 @@ public class NotificationController {
     }
 
 
-    // Marks all notifications as read
+    // Marks the caller's notifications as read
     @PutMapping("/mark-all-read")
-    public void markAllAsRead() {
-        notificationService.markAllAsRead();
+    public void markAllAsRead(@RequestHeader("Authorization") String token) {
+        notificationService.markAllAsRead(currentUserId(token));
     }
 
+    // Without cursor/limit the full list (legacy clients); with either, a keyset page, newest first
     @GetMapping("/user")
-    public List<NotificationEntity> getNotificationsForUser(@RequestHeader("Authorization") String token) {
+    public ResponseEntity<?> getNotificationsForUser(@RequestHeader("Authorization") String token,
+                                                     @RequestParam(required = false) String cursor,
+                                                     @RequestParam(required = false) Integer limit) {
+        Long userId = currentUserId(token);
+        if (cursor != null || limit != null) {
+            return ResponseEntity.ok(notificationService.getNotificationPageForUser(userId, cursor, limit));
+        }
+        return ResponseEntity.ok(notificationService.getNotificationsForUser(userId));
+    }
+
+    // Direct and broadcast notifications the caller has not read, newest first
+    @GetMapping("/unread")
+    public List<UserNotification> getUnreadNotifications(@RequestHeader("Authorization") String token,
+                                                         @RequestParam(required = false) Integer limit) {
+        return notificationService.getUnreadNotifications(currentUserId(token), limit);
+    }
+
+    // Works for both direct notifications and broadcasts
+    @PutMapping("/{id}/read")
+    public void markAsRead(@RequestHeader("Authorization") String token, @PathVariable Long id) {
+        notificationService.markAsRead(currentUserId(token), id);
+    }
+
+    // Notifications after the last id the client saw (broadcasts and its own), oldest first, at most 100 per call.
+    // Served from memory after a short disconnect; no user lookup, the token carries both id and email.
+    @GetMapping("/replay")
+    public List<NotificationDTO> replay(@RequestHeader("Authorization") String token, @RequestParam long since) {
+        String jwt = token.substring(7);
+        Long userId = jwtUtil.extractClaim(jwt, claims -> claims.get("id", Long.class));
+        return notificationService.replaySince(userId, jwtUtil.extractUsername(jwt), since);
+    }
+
+    // Badge count, answered from memory in the common case
+    @GetMapping("/unread-count")
+    public Map<String, Long> getUnreadCount(@RequestHeader("Authorization") String token) {
+        return Map.of("unread", notificationService.getUnreadCount(currentUserId(token)));
+    }
+
+    private Long currentUserId(String token) {
         // Remove "Bearer " prefix
         String jwt = token.substring(7);
         String email = jwtUtil.extractUsername(jwt);
 
-        // Find the user
-        UserEntity user = userService.findByEmail(email)
+        return userService.findByEmail(email)
+                .map(UserEntity::getId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
-
-        // Get notifications
-        return notificationService.getNotificationsForUser(user.getId());
     }
 
 
-}
+}
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.example.GoogleContacts_Cultura.controller;
+
+import com.example.GoogleContacts_Cultura.DTO.PresenceUpdate;
+import com.example.GoogleContacts_Cultura.DTO.TypingUpdate;
+import com.example.GoogleContacts_Cultura.service.PresenceService;
+import org.springframework.http.HttpStatus;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/presence")
+public class PresenceController {
+
+    private static final int MAX_IDS = 200;
+
+    private final PresenceService presenceService;
+
+    public PresenceController(PresenceService presenceService) {
+        this.presenceService = presenceService;
+    }
+
+    // Current state of the given users, e.g. everyone in the inbox; live changes come on /topic/presence/{userId}
+    // http://localhost:8080/api/presence?ids=3,7,12
+    @GetMapping
+    public List<PresenceUpdate> getPresence(@RequestParam List<Long> ids) {
+        if (ids.size() > MAX_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_IDS + " ids per request");
+        }
+        return presenceService.getPresence(ids);
+    }
+
+    // Client sends {receiverId, typing} to /app/typing while composing; coalesced before it reaches the receiver
+    @MessageMapping("/typing")
+    public void typing(TypingUpdate update, SimpMessageHeaderAccessor headers) {
+        presenceService.typing(headers.getSessionId(), update);
+    }
+}
@@ -1,9 +1,15 @@
 package com.example.GoogleContacts_Cultura.controller;
 
+import com.example.GoogleContacts_Cultura.DTO.TaskEventReplay;
+import com.example.GoogleContacts_Cultura.DTO.TaskFacets;
+import com.example.GoogleContacts_Cultura.DTO.TaskSummary;
 import com.example.GoogleContacts_Cultura.JWT.JwtUtil;
 import com.example.GoogleContacts_Cultura.entity.TaskEntity;
+import com.example.GoogleContacts_Cultura.model.Category;
+import com.example.GoogleContacts_Cultura.model.TaskStatus;
 import com.example.GoogleContacts_Cultura.service.TaskService;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
@@ -30,6 +36,30 @@ public class TaskController {
         return ResponseEntity.ok(taskService.findAll());
     }
 
+    // Full-text search over title, description, poster username and category
+    @GetMapping("/search")
+    public ResponseEntity<List<TaskSummary>> searchTasks(@RequestParam("q") String query,
+                                                         @RequestParam(required = false) String status,
+                                                         @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(taskService.searchTasks(query, status, limit));
+        // http://localhost:8080/api/task/search?q=calculus&status=Open
+    }
+
+    // Task counts per category and status, kept in memory
+    @GetMapping("/facets")
+    public ResponseEntity<TaskFacets> getTaskFacets() {
+        return ResponseEntity.ok(taskService.getTaskFacets());
+        // http://localhost:8080/api/task/facets
+    }
+
+    // Deltas published on /topic/tasks after the given feed version, for clients resuming after a disconnect
+    @GetMapping("/events")
+    public ResponseEntity<TaskEventReplay> getTaskEventsSince(@RequestParam long since,
+                                                             @RequestParam(required = false) Category category) {
+        return ResponseEntity.ok(taskService.getTaskEventsSince(since, category));
+        // http://localhost:8080/api/task/events?since=1714000000123
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<TaskEntity> getTaskById(@PathVariable Long id){
         Optional<TaskEntity> task = taskService.findById(id);
@@ -38,34 +68,45 @@ public class TaskController {
 
     // Get all tasks posted by the logged-in user
     @GetMapping("/posted")
-    public ResponseEntity<List<TaskEntity>> getPostedTasksByUser(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<List<TaskSummary>> getPostedTasksByUser(@RequestHeader("Authorization") String authHeader) {
         String token = authHeader.substring(7); // Remove "Bearer "
         Long userId = jwtUtil.extractClaim(token, claims -> claims.get("id", Long.class)); // Extract userId from the token
 
-        List<TaskEntity> tasks = taskService.getPostedTasksByUser(userId);
+        List<TaskSummary> tasks = taskService.getPostedTasksByUser(userId);
         return ResponseEntity.ok(tasks);
     }
 
     // Get all tasks accepted by the logged-in user
     @GetMapping("/accepted")
-    public ResponseEntity<List<TaskEntity>> getAcceptedTasksByUser(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<List<TaskSummary>> getAcceptedTasksByUser(@RequestHeader("Authorization") String authHeader) {
         String token = authHeader.substring(7); // Remove "Bearer "
         Long userId = jwtUtil.extractClaim(token, claims -> claims.get("id", Long.class)); // Extract userId from the token
 
-        List<TaskEntity> tasks = taskService.getAcceptedTasksByUser(userId);
+        List<TaskSummary> tasks = taskService.getAcceptedTasksByUser(userId);
         return ResponseEntity.ok(tasks);
     }
 
     // Get task history (Done tasks) for the logged-in user
     @GetMapping("/history")
-    public ResponseEntity<List<TaskEntity>> getTaskHistoryByUser(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<List<TaskSummary>> getTaskHistoryByUser(@RequestHeader("Authorization") String authHeader) {
         String token = authHeader.substring(7); // Remove "Bearer "
         Long userId = jwtUtil.extractClaim(token, claims -> claims.get("id", Long.class)); // Extract userId from the token
 
-        List<TaskEntity> tasks = taskService.getTaskHistoryByUser(userId);
+        List<TaskSummary> tasks = taskService.getTaskHistoryByUser(userId);
         return ResponseEntity.ok(tasks);
     }
 
+    // Open tasks ranked for the logged-in user (category affinity, recency, poster reliability)
+    @GetMapping("/for-you")
+    public ResponseEntity<List<TaskSummary>> getTasksForYou(@RequestHeader("Authorization") String authHeader,
+                                                            @RequestParam(required = false) Integer limit) {
+        String token = authHeader.substring(7); // Remove "Bearer "
+        Long userId = jwtUtil.extractClaim(token, claims -> claims.get("id", Long.class)); // Extract userId from the token
+
+        return ResponseEntity.ok(taskService.getTasksForYou(userId, limit));
+        // http://localhost:8080/api/task/for-you?limit=20
+    }
+
     // Get all tasks with "Pending Verification" status posted by the logged-in user
     @GetMapping("/pending-verification")
     public ResponseEntity<List<TaskEntity>> getPendingVerificationTasks(@RequestHeader("Authorization") String authHeader) {
@@ -78,23 +119,41 @@ public class TaskController {
 
     //------------------------------------------------------------------------------------------------------------------
 
+    // Without cursor/limit these return the full list (legacy clients); with either, a keyset page.
+    // The open feed is served from the in-memory snapshot; X-Feed-Version is the /topic/tasks version it reflects.
     @GetMapping("/open")
-    public ResponseEntity<List<TaskEntity>> getOpenTasks() {
-        List<TaskEntity> openTasks = taskService.findTasksByStatus("Open"); // Assuming "OPEN" is the status for open tasks
-        return ResponseEntity.ok(openTasks);
-        // http://localhost:8080/api/task/open
+    public ResponseEntity<byte[]> getOpenTasks(@RequestParam(required = false) String cursor,
+                                               @RequestParam(required = false) Integer limit,
+                                               @RequestParam(required = false) Category category) {
+        long feedVersion = taskService.getOpenFeedVersion();
+        byte[] body = (cursor != null || limit != null)
+                ? taskService.getOpenTaskPageJson(category, cursor, limit)
+                : taskService.getOpenTasksJson(category);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("X-Feed-Version", String.valueOf(feedVersion))
+                .body(body);
+        // http://localhost:8080/api/task/open?limit=20&cursor=...&category=PROGRAMMING
     }
 
     @GetMapping("/done")
-    public ResponseEntity<List<TaskEntity>> getDoneTasks() {
-        List<TaskEntity> doneTasks = taskService.findTasksByStatus("Done"); // Assuming "DONE" is the status for completed tasks
+    public ResponseEntity<?> getDoneTasks(@RequestParam(required = false) String cursor,
+                                          @RequestParam(required = false) Integer limit) {
+        if (cursor != null || limit != null) {
+            return ResponseEntity.ok(taskService.findTaskPageByStatus(TaskStatus.DONE, cursor, limit));
+        }
+        List<TaskSummary> doneTasks = taskService.findTasksByStatus(TaskStatus.DONE); // Assuming "DONE" is the status for completed tasks
         return ResponseEntity.ok(doneTasks);
         // http://localhost:8080/api/task/done
     }
 
     @GetMapping("/in-progress")
-    public ResponseEntity<List<TaskEntity>> getInProgressTasks() {
-        List<TaskEntity> inProgressTasks = taskService.findTasksByStatus("In Progress"); // Assuming "IN PROGRESS" is the status for in-progress tasks
+    public ResponseEntity<?> getInProgressTasks(@RequestParam(required = false) String cursor,
+                                                @RequestParam(required = false) Integer limit) {
+        if (cursor != null || limit != null) {
+            return ResponseEntity.ok(taskService.findTaskPageByStatus(TaskStatus.IN_PROGRESS, cursor, limit));
+        }
+        List<TaskSummary> inProgressTasks = taskService.findTasksByStatus(TaskStatus.IN_PROGRESS); // Assuming "IN PROGRESS" is the status for in-progress tasks
         return ResponseEntity.ok(inProgressTasks);
     }
 
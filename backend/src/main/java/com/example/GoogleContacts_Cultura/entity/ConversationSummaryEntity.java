@@ -0,0 +1,83 @@
+package com.example.GoogleContacts_Cultura.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// One row per (owner, peer) conversation: what the owner's inbox shows for that peer.
+// Written with an upsert on every message (see ConversationSummaryRepo), so the inbox never scans messages.
+@Entity
+@Table(name = "conversation_summary",
+        uniqueConstraints = @UniqueConstraint(name = "uk_conversation_summary_owner_peer", columnNames = {"owner_id", "peer_id"}),
+        indexes = @Index(name = "idx_conversation_summary_owner_timestamp", columnList = "owner_id, last_message_timestamp"))
+public class ConversationSummaryEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "owner_id", nullable = false)
+    private UserEntity owner;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "peer_id", nullable = false)
+    private UserEntity peer;
+
+    @Column(name = "last_message_id")
+    private Long lastMessageId;
+
+    @Column(name = "last_message_content")
+    private String lastMessageContent;
+
+    @Column(name = "last_message_timestamp")
+    private LocalDateTime lastMessageTimestamp;
+
+    @Column(name = "last_sender_id")
+    private Long lastSenderId;
+
+    @Column(name = "unread_count", nullable = false)
+    private int unreadCount;
+
+    // Highest message sequence in the conversation; both sides move together under the send transaction's row locks
+    @Column(name = "last_sequence", nullable = false)
+    private long lastSequence;
+
+    public ConversationSummaryEntity() {}
+
+    public Long getId() {
+        return id;
+    }
+
+    public UserEntity getOwner() {
+        return owner;
+    }
+
+    public UserEntity getPeer() {
+        return peer;
+    }
+
+    public Long getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public String getLastMessageContent() {
+        return lastMessageContent;
+    }
+
+    public LocalDateTime getLastMessageTimestamp() {
+        return lastMessageTimestamp;
+    }
+
+    public Long getLastSenderId() {
+        return lastSenderId;
+    }
+
+    public int getUnreadCount() {
+        return unreadCount;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+}
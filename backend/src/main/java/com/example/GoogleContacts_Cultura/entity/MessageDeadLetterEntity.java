@@ -0,0 +1,87 @@
+package com.example.GoogleContacts_Cultura.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// A write-behind message the database refused for good (e.g. one side was deleted while it was queued). Its id and
+// sequence were already handed out and broadcast, so it is kept here instead of being dropped; written by
+// MessageWriteBehind with JDBC.
+@Entity
+@Table(name = "message_dead_letter")
+public class MessageDeadLetterEntity {
+
+    @Id
+    @Column(name = "message_id")
+    private Long messageId;
+
+    // Plain columns rather than relations: the users may be exactly what no longer exists
+    @Column(name = "sender_id")
+    private Long senderId;
+
+    @Column(name = "receiver_id")
+    private Long receiverId;
+
+    @Column(name = "content")
+    private String content;
+
+    @Column(name = "timestamp")
+    private LocalDateTime timestamp;
+
+    @Column(name = "conversation_low")
+    private Long conversationLow;
+
+    @Column(name = "conversation_high")
+    private Long conversationHigh;
+
+    @Column(name = "conversation_seq")
+    private Long sequence;
+
+    @Column(name = "error", length = 500)
+    private String error;
+
+    @Column(name = "failed_at", nullable = false)
+    private LocalDateTime failedAt;
+
+    protected MessageDeadLetterEntity() {}
+
+    public Long getMessageId() {
+        return messageId;
+    }
+
+    public Long getSenderId() {
+        return senderId;
+    }
+
+    public Long getReceiverId() {
+        return receiverId;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public Long getConversationLow() {
+        return conversationLow;
+    }
+
+    public Long getConversationHigh() {
+        return conversationHigh;
+    }
+
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public LocalDateTime getFailedAt() {
+        return failedAt;
+    }
+}
@@ -4,7 +4,13 @@ import com.example.GoogleContacts_Cultura.model.Role;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+        // Every conversation lookup is one range on (low, high), already in timestamp order
+        @Index(name = "idx_messages_conversation_timestamp_id", columnList = "conversation_low, conversation_high, timestamp, message_id")
+}, uniqueConstraints = {
+        // Sequence numbers are per conversation and never reused; also serves /sync range reads
+        @UniqueConstraint(name = "uk_messages_conversation_seq", columnNames = {"conversation_low", "conversation_high", "conversation_seq"})
+})
 public class MessageEntity {
 
     @Id
@@ -26,6 +32,17 @@ public class MessageEntity {
     @Column(name = "timestamp")
     private LocalDateTime timestamp;
 
+    // Canonical conversation key: (min(senderId, receiverId), max(senderId, receiverId)), the same for both directions
+    @Column(name = "conversation_low")
+    private Long conversationLow;
+
+    @Column(name = "conversation_high")
+    private Long conversationHigh;
+
+    // 1, 2, 3, ... within the conversation, allocated in the send transaction (see InboxService.recordMessage)
+    @Column(name = "conversation_seq")
+    private Long sequence;
+
     // Default constructor
     public MessageEntity() {}
 
@@ -78,6 +95,31 @@ public class MessageEntity {
         this.timestamp = timestamp;
     }
 
+    public Long getConversationLow() {
+        return conversationLow;
+    }
+
+    public Long getConversationHigh() {
+        return conversationHigh;
+    }
+
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(Long sequence) {
+        this.sequence = sequence;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void assignConversationKey() {
+        if (sender != null && receiver != null && sender.getId() != null && receiver.getId() != null) {
+            this.conversationLow = Math.min(sender.getId(), receiver.getId());
+            this.conversationHigh = Math.max(sender.getId(), receiver.getId());
+        }
+    }
+
     // Check if the sender is a USER
     public boolean isSenderUser() {
         return sender.getRole() == Role.USER;
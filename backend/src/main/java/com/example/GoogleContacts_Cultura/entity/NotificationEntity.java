@@ -1,12 +1,13 @@
 package com.example.GoogleContacts_Cultura.entity;
 
+import com.example.GoogleContacts_Cultura.model.NotificationChannel;
 import jakarta.persistence.*;
 
 
 import java.time.LocalDateTime;
 
 @Entity
-
+@Table(indexes = @Index(name = "idx_notification_user_timestamp", columnList = "user_id, timestamp, id"))
 public class NotificationEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -23,6 +24,12 @@ public class NotificationEntity {
     @JoinColumn(name = "user_id")
     private UserEntity user;
 
+    // Which destination it was pushed to, so a replay from the database matches one from memory.
+    // NULL for rows stored before the outbox, which are treated as BROADCAST.
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private NotificationChannel channel;
+
 
     // Getters and Setters
     public Long getId() {
@@ -73,4 +80,12 @@ public class NotificationEntity {
     public void setUser(UserEntity user) {
         this.user = user;
     }
+
+    public NotificationChannel getChannel() {
+        return channel;
+    }
+
+    public void setChannel(NotificationChannel channel) {
+        this.channel = channel;
+    }
 }
\ No newline at end of file
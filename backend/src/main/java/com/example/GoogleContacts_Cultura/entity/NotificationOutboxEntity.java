@@ -0,0 +1,109 @@
+package com.example.GoogleContacts_Cultura.entity;
+
+import com.example.GoogleContacts_Cultura.model.NotificationChannel;
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// A notification that still has to be stored and pushed. Written in the same transaction as the change it
+// announces, so it exists exactly when that change committed; NotificationOutboxDispatcher drains the table.
+@Entity
+@Table(name = "notification_outbox",
+        indexes = @Index(name = "idx_notification_outbox_next_attempt", columnList = "next_attempt_at, id"))
+public class NotificationOutboxEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String message;
+    private String type;
+
+    // Optional short label (a task's category) listed in digests
+    @Column(length = 64)
+    private String detail;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private NotificationChannel channel;
+
+    // Plain columns rather than a relation: the dispatcher works in SQL and never loads users
+    @Column(name = "recipient_id")
+    private Long recipientId;
+
+    @Column(name = "recipient_email")
+    private String recipientEmail;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    protected NotificationOutboxEntity() {}
+
+    // Rows of coalesced types are held back until their window closes (deliverAfter)
+    public NotificationOutboxEntity(String message, String type, String detail, NotificationChannel channel,
+                                    UserEntity recipient, LocalDateTime createdAt, LocalDateTime deliverAfter) {
+        this.message = message;
+        this.type = type;
+        this.detail = detail;
+        this.channel = channel;
+        if (recipient != null) {
+            this.recipientId = recipient.getId();
+            this.recipientEmail = recipient.getEmail();
+        }
+        this.createdAt = createdAt;
+        this.nextAttemptAt = deliverAfter;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    public NotificationChannel getChannel() {
+        return channel;
+    }
+
+    public Long getRecipientId() {
+        return recipientId;
+    }
+
+    public String getRecipientEmail() {
+        return recipientEmail;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.GoogleContacts_Cultura.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+// Which broadcast notifications one user has read, as a serialized run-length bitmap of notification ids.
+// Broadcasts are stored once (user_id NULL in notification_entity); this table is O(users), not O(broadcasts x users).
+// Owned by BroadcastReadState, which writes it with JDBC; the entity only declares the table.
+@Entity
+@Table(name = "notification_read_state")
+public class NotificationReadStateEntity {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "read_broadcasts", nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] readBroadcasts;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public byte[] getReadBroadcasts() {
+        return readBroadcasts;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
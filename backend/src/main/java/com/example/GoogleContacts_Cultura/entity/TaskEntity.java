@@ -2,13 +2,18 @@ package com.example.GoogleContacts_Cultura.entity;
 
 
 import com.example.GoogleContacts_Cultura.model.Category;
+import com.example.GoogleContacts_Cultura.model.TaskStatus;
+import com.example.GoogleContacts_Cultura.model.TaskStatusConverter;
 import jakarta.persistence.*;
 import jakarta.annotation.Nullable;
 import java.time.LocalDateTime;
 
 
 @Entity
-@Table(name = "tbl_task")
+@Table(name = "tbl_task", indexes = {
+        // Backs the keyset-paginated feed: WHERE status_code = ? ORDER BY timestamp DESC, task_id DESC
+        @Index(name = "idx_task_status_code_timestamp_id", columnList = "status_code, timestamp, task_id")
+})
 public class TaskEntity {
 
     @Id
@@ -18,7 +23,12 @@ public class TaskEntity {
     private Long id;
     private String title;
     private String description;
-    private String status;
+
+    // One byte per row instead of the old free-text status column (backfilled by TaskStatusBackfill)
+    @Convert(converter = TaskStatusConverter.class)
+    @Column(name = "status_code")
+    private TaskStatus status;
+
     private Long markedDoneBy;
 
     @Enumerated(EnumType.STRING)
@@ -48,7 +58,7 @@ public class TaskEntity {
         this.timestamp = LocalDateTime.now();
     }
 
-    public TaskEntity(Long id, String title, String description, String status, UserEntity user, UserEntity acceptedBy, String activeStatus, String imageUrl ) {
+    public TaskEntity(Long id, String title, String description, TaskStatus status, UserEntity user, UserEntity acceptedBy, String activeStatus, String imageUrl ) {
         this.id = id;
         this.title = title;
         this.description = description;
@@ -61,7 +71,7 @@ public class TaskEntity {
     }
 
     public boolean isPendingVerification() {
-        return "Pending Verification".equals(this.status);
+        return this.status == TaskStatus.PENDING_VERIFICATION;
     }
 
     public Long getId() {
@@ -88,11 +98,11 @@ public class TaskEntity {
         this.description = description;
     }
 
-    public String getStatus() {
+    public TaskStatus getStatus() {
         return status;
     }
 
-    public void setStatus(String status) {
+    public void setStatus(TaskStatus status) {
         this.status = status;
     }
 
@@ -144,5 +154,13 @@ public class TaskEntity {
         this.category = category;
     }
 
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public void setImageUrl(String imageUrl) {
+        this.imageUrl = imageUrl;
+    }
+
 
 }
@@ -0,0 +1,8 @@
+package com.example.GoogleContacts_Cultura.model;
+
+// Where an outboxed notification is pushed once it has been stored
+public enum NotificationChannel {
+    BROADCAST,  // /topic/notifications
+    ALL_USERS,  // /topic/notifications/user
+    DIRECT      // the recipient's /user/queue/notifications
+}
@@ -0,0 +1,12 @@
+package com.example.GoogleContacts_Cultura.model;
+
+// How notifications of one type reach clients. Chosen per type with collaboraid.notifications.delivery.<TYPE>;
+// see NotificationDeliveryPolicies for the defaults.
+public enum NotificationDelivery {
+    // Stored and pushed one by one, as soon as the dispatcher sees them
+    IMMEDIATE,
+    // Stored one by one, but everything of that type for one destination within the window is pushed as one frame
+    COALESCE,
+    // Only the digest is stored and pushed; the individual notifications are never written
+    DIGEST
+}
@@ -0,0 +1,40 @@
+package com.example.GoogleContacts_Cultura.model;
+
+// Per-route request budgets: a sustained rate plus a burst. Defaults can be overridden with
+// collaboraid.rate-limit.<key>.requests / .period-seconds / .burst
+public enum RateLimitPolicy {
+    // /app/sendMessage, POST /api/messages/send and /send-authenticated
+    CHAT("chat", 20, 10, 30),
+    // POST /api/task
+    TASK_CREATE("task-create", 10, 60, 5),
+    // POST /api/livechat/ask-ai and /ask-ai/public, each one a paid OpenAI call
+    AI("ai", 6, 60, 3);
+
+    private final String key;
+    private final int requests;
+    private final int periodSeconds;
+    private final int burst;
+
+    RateLimitPolicy(String key, int requests, int periodSeconds, int burst) {
+        this.key = key;
+        this.requests = requests;
+        this.periodSeconds = periodSeconds;
+        this.burst = burst;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public int getRequests() {
+        return requests;
+    }
+
+    public int getPeriodSeconds() {
+        return periodSeconds;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.GoogleContacts_Cultura.model;
+
+public enum TaskEventType {
+    CREATED,
+    ACCEPTED,
+    STATUS_CHANGED,
+    UPDATED,
+    DELETED
+}
@@ -0,0 +1,74 @@
+package com.example.GoogleContacts_Cultura.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+// Task lifecycle. Stored as a one-byte code (see TaskStatusConverter), serialized as the label clients already use.
+//
+//   Open -> In Progress -> Pending Verification -> Done
+public enum TaskStatus {
+    OPEN((byte) 1, "Open"),
+    IN_PROGRESS((byte) 2, "In Progress"),
+    PENDING_VERIFICATION((byte) 3, "Pending Verification"),
+    DONE((byte) 4, "Done");
+
+    static {
+        OPEN.next = EnumSet.of(IN_PROGRESS);
+        IN_PROGRESS.next = EnumSet.of(PENDING_VERIFICATION);
+        PENDING_VERIFICATION.next = EnumSet.of(DONE);
+        DONE.next = EnumSet.noneOf(TaskStatus.class);
+    }
+
+    private final byte code;
+    private final String label;
+    private Set<TaskStatus> next;
+
+    TaskStatus(byte code, String label) {
+        this.code = code;
+        this.label = label;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    @JsonValue
+    public String getLabel() {
+        return label;
+    }
+
+    public boolean canTransitionTo(TaskStatus target) {
+        return next.contains(target);
+    }
+
+    // Both parties are busy with the task
+    public boolean isOngoing() {
+        return this == IN_PROGRESS || this == PENDING_VERIFICATION;
+    }
+
+    public static TaskStatus fromCode(byte code) {
+        for (TaskStatus status : values()) {
+            if (status.code == code) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown task status code: " + code);
+    }
+
+    // Accepts the label ("In Progress") or the constant name ("IN_PROGRESS"), case-insensitively
+    @JsonCreator
+    public static TaskStatus fromLabel(String value) {
+        if (value == null) {
+            return null;
+        }
+        for (TaskStatus status : values()) {
+            if (status.label.equalsIgnoreCase(value) || status.name().equalsIgnoreCase(value)) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown task status: " + value);
+    }
+}
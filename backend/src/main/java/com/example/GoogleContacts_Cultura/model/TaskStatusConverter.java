@@ -0,0 +1,19 @@
+package com.example.GoogleContacts_Cultura.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+// Stable one-byte codes rather than ordinals, so reordering the enum never rewrites the meaning of stored rows
+@Converter
+public class TaskStatusConverter implements AttributeConverter<TaskStatus, Byte> {
+
+    @Override
+    public Byte convertToDatabaseColumn(TaskStatus status) {
+        return status == null ? null : status.getCode();
+    }
+
+    @Override
+    public TaskStatus convertToEntityAttribute(Byte code) {
+        return code == null ? null : TaskStatus.fromCode(code);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.GoogleContacts_Cultura.repository;
+
+import com.example.GoogleContacts_Cultura.DTO.InboxEntry;
+import com.example.GoogleContacts_Cultura.entity.ConversationSummaryEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ConversationSummaryRepo extends JpaRepository<ConversationSummaryEntity, Long> {
+
+    @Query("SELECT new com.example.GoogleContacts_Cultura.DTO.InboxEntry(" +
+            "p.id, p.username, p.role, p.profilePicture, c.lastMessageId, c.lastMessageContent, " +
+            "c.lastMessageTimestamp, c.lastSenderId, c.unreadCount, c.lastSequence) " +
+            "FROM ConversationSummaryEntity c JOIN c.peer p " +
+            "WHERE c.owner.id = :ownerId ORDER BY c.lastMessageTimestamp DESC")
+    List<InboxEntry> findInbox(@Param("ownerId") Long ownerId);
+
+    // Atomic insert-or-update of one side of a conversation (MySQL). Also bumps last_sequence, and the row lock it
+    // takes is held until commit, which is what serializes sequence allocation per conversation.
+    // The "last message" columns only move forward, so concurrent sends landing out of order cannot regress the
+    // preview; last_message_id is assigned last because MySQL evaluates these assignments left to right.
+    @Modifying
+    @Query(value = "INSERT INTO conversation_summary " +
+            "(owner_id, peer_id, last_message_id, last_message_content, last_message_timestamp, last_sender_id, unread_count, last_sequence) " +
+            "VALUES (:ownerId, :peerId, :messageId, :content, :timestamp, :senderId, :unreadIncrement, 1) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "unread_count = unread_count + VALUES(unread_count), " +
+            "last_sequence = last_sequence + 1, " +
+            "last_message_content = IF(last_message_id IS NULL OR VALUES(last_message_id) > last_message_id, VALUES(last_message_content), last_message_content), " +
+            "last_message_timestamp = IF(last_message_id IS NULL OR VALUES(last_message_id) > last_message_id, VALUES(last_message_timestamp), last_message_timestamp), " +
+            "last_sender_id = IF(last_message_id IS NULL OR VALUES(last_message_id) > last_message_id, VALUES(last_sender_id), last_sender_id), " +
+            "last_message_id = GREATEST(COALESCE(last_message_id, 0), VALUES(last_message_id))",
+            nativeQuery = true)
+    int upsert(@Param("ownerId") Long ownerId,
+               @Param("peerId") Long peerId,
+               @Param("messageId") Long messageId,
+               @Param("content") String content,
+               @Param("timestamp") LocalDateTime timestamp,
+               @Param("senderId") Long senderId,
+               @Param("unreadIncrement") int unreadIncrement);
+
+    @Query("SELECT c.lastSequence FROM ConversationSummaryEntity c WHERE c.owner.id = :ownerId AND c.peer.id = :peerId")
+    Long findLastSequence(@Param("ownerId") Long ownerId, @Param("peerId") Long peerId);
+
+    @Modifying
+    @Query("UPDATE ConversationSummaryEntity c SET c.unreadCount = 0 WHERE c.owner.id = :ownerId AND c.peer.id = :peerId")
+    int markRead(@Param("ownerId") Long ownerId, @Param("peerId") Long peerId);
+
+    // Rebuilds both sides of every conversation from the messages table, with nothing unread (MySQL).
+    // Runs after messages.conversation_seq is numbered, so the last message also carries the last sequence.
+    @Modifying
+    @Query(value = "INSERT INTO conversation_summary " +
+            "(owner_id, peer_id, last_message_id, last_message_content, last_message_timestamp, last_sender_id, unread_count, last_sequence) " +
+            "SELECT sides.owner_id, sides.peer_id, m.message_id, LEFT(m.content, 255), m.timestamp, m.sender_id, 0, COALESCE(m.conversation_seq, 0) " +
+            "FROM (SELECT conversation_low AS owner_id, conversation_high AS peer_id, MAX(message_id) AS last_id " +
+            "      FROM messages WHERE conversation_low IS NOT NULL GROUP BY conversation_low, conversation_high " +
+            "      UNION ALL " +
+            "      SELECT conversation_high, conversation_low, MAX(message_id) " +
+            "      FROM messages WHERE conversation_low IS NOT NULL AND conversation_low <> conversation_high " +
+            "      GROUP BY conversation_low, conversation_high) sides " +
+            "JOIN messages m ON m.message_id = sides.last_id",
+            nativeQuery = true)
+    int rebuildFromMessages();
+}
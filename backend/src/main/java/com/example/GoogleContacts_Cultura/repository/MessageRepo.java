@@ -1,11 +1,16 @@
 package com.example.GoogleContacts_Cultura.repository;
 
+import com.example.GoogleContacts_Cultura.DTO.MessageDTO;
 import com.example.GoogleContacts_Cultura.entity.MessageEntity;
+import com.example.GoogleContacts_Cultura.model.Role;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface MessageRepo extends JpaRepository<MessageEntity, Long> {
 
@@ -13,34 +18,132 @@ public interface MessageRepo extends JpaRepository<MessageEntity, Long> {
     List<MessageEntity> findByReceiverId(Long receiverId);
     List<MessageEntity> findBySenderIdAndReceiverId(Long senderId, Long receiverId);
 
+    //------------------------------------------------------------------------------------------------------------------
+    // MessageDTO projections: one statement per list however many messages or distinct users it contains
+
+    String DTO_SELECT = "SELECT new com.example.GoogleContacts_Cultura.DTO.MessageDTO(" +
+            "m.messageId, s.id, s.username, s.email, s.role, r.id, r.username, r.email, r.role, m.content, m.timestamp, m.sequence) " +
+            "FROM MessageEntity m LEFT JOIN m.sender s LEFT JOIN m.receiver r ";
+
+    @Query(DTO_SELECT + "ORDER BY m.messageId")
+    List<MessageDTO> findAllMessageDTOs();
+
+    @Query(DTO_SELECT + "WHERE m.messageId = :messageId")
+    Optional<MessageDTO> findMessageDTOById(@Param("messageId") Long messageId);
+
+    @Query(DTO_SELECT + "WHERE s.id = :senderId ORDER BY m.timestamp ASC, m.messageId ASC")
+    List<MessageDTO> findMessageDTOsBySenderId(@Param("senderId") Long senderId);
+
+    @Query(DTO_SELECT + "WHERE r.id = :receiverId ORDER BY m.timestamp ASC, m.messageId ASC")
+    List<MessageDTO> findMessageDTOsByReceiverId(@Param("receiverId") Long receiverId);
+
+    //------------------------------------------------------------------------------------------------------------------
+    // Every conversation query below is a single range scan on idx_messages_conversation_timestamp_id.
+    // Callers pass the two user ids in any order; the default methods put them in (low, high) form.
+
+    String CONVERSATION = "m.conversationLow = :low AND m.conversationHigh = :high ";
+
+    // Both directions of a conversation, oldest first
+    @Query(DTO_SELECT + "WHERE " + CONVERSATION + "ORDER BY m.timestamp ASC, m.messageId ASC")
+    List<MessageDTO> findByConversation(@Param("low") Long low, @Param("high") Long high);
+
+    default List<MessageDTO> findConversation(Long userA, Long userB) {
+        return findByConversation(Math.min(userA, userB), Math.max(userA, userB));
+    }
 
     // Custom query to fetch messages between users (USER -> USER)
-    @Query("SELECT m FROM MessageEntity m WHERE (m.sender.id = :senderId AND m.receiver.id = :receiverId AND m.sender.role = 'USER' AND m.receiver.role = 'USER') " +
-            "OR (m.sender.id = :receiverId AND m.receiver.id = :senderId AND m.sender.role = 'USER' AND m.receiver.role = 'USER') " +
-            "ORDER BY m.timestamp ASC")
-    List<MessageEntity> findMessagesBetweenUsers(
+    @Query(DTO_SELECT + "WHERE " + CONVERSATION +
+            "AND s.role = 'USER' AND r.role = 'USER' " +
+            "ORDER BY m.timestamp ASC, m.messageId ASC")
+    List<MessageDTO> findUserConversation(@Param("low") Long low, @Param("high") Long high);
+
+    default List<MessageDTO> findMessagesBetweenUsers(Long senderId, Long receiverId) {
+        return findUserConversation(Math.min(senderId, receiverId), Math.max(senderId, receiverId));
+    }
+
+    // One direction of a conversation with the given sender and receiver roles
+    @Query(DTO_SELECT + "WHERE " + CONVERSATION +
+            "AND s.id = :senderId AND s.role = :senderRole AND r.role = :receiverRole " +
+            "ORDER BY m.timestamp ASC, m.messageId ASC")
+    List<MessageDTO> findDirectedConversation(
+            @Param("low") Long low,
+            @Param("high") Long high,
             @Param("senderId") Long senderId,
-            @Param("receiverId") Long receiverId
+            @Param("senderRole") Role senderRole,
+            @Param("receiverRole") Role receiverRole
     );
 
     // Custom query for messages from USER to ADMIN
-    @Query("SELECT m FROM MessageEntity m WHERE m.sender.id = :senderId AND m.receiver.id = :receiverId AND m.sender.role = 'USER' AND m.receiver.role = 'ADMIN' ORDER BY m.timestamp ASC")
-    List<MessageEntity> findMessagesFromUserToAdmin(
-            @Param("senderId") Long senderId,
-            @Param("receiverId") Long receiverId
-    );
+    default List<MessageDTO> findMessagesFromUserToAdmin(Long senderId, Long receiverId) {
+        return findDirectedConversation(Math.min(senderId, receiverId), Math.max(senderId, receiverId), senderId,
+                Role.USER, Role.ADMIN);
+    }
 
     // Custom query for messages from ADMIN to USER
-    @Query("SELECT m FROM MessageEntity m WHERE m.sender.id = :senderId AND m.receiver.id = :receiverId AND m.sender.role = 'ADMIN' AND m.receiver.role = 'USER' ORDER BY m.timestamp ASC")
-    List<MessageEntity> findMessagesFromAdminToUser(
-            @Param("senderId") Long senderId,
-            @Param("receiverId") Long receiverId
+    default List<MessageDTO> findMessagesFromAdminToUser(Long senderId, Long receiverId) {
+        return findDirectedConversation(Math.min(senderId, receiverId), Math.max(senderId, receiverId), senderId,
+                Role.ADMIN, Role.USER);
+    }
+
+    default List<MessageDTO> findFullConversation(Long adminId, Long userId) {
+        return findConversation(adminId, userId);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+    // Keyset pages of one conversation, ordered by (timestamp, message_id)
+
+    @Query(DTO_SELECT + "WHERE " + CONVERSATION + "ORDER BY m.timestamp DESC, m.messageId DESC")
+    List<MessageDTO> findLatestByConversation(@Param("low") Long low, @Param("high") Long high, Pageable pageable);
+
+    @Query(DTO_SELECT + "WHERE " + CONVERSATION +
+            "AND (m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.messageId < :messageId)) " +
+            "ORDER BY m.timestamp DESC, m.messageId DESC")
+    List<MessageDTO> findByConversationBefore(
+            @Param("low") Long low,
+            @Param("high") Long high,
+            @Param("timestamp") LocalDateTime timestamp,
+            @Param("messageId") Long messageId,
+            Pageable pageable
+    );
+
+    @Query(DTO_SELECT + "WHERE " + CONVERSATION +
+            "AND (m.timestamp > :timestamp OR (m.timestamp = :timestamp AND m.messageId > :messageId)) " +
+            "ORDER BY m.timestamp ASC, m.messageId ASC")
+    List<MessageDTO> findByConversationAfter(
+            @Param("low") Long low,
+            @Param("high") Long high,
+            @Param("timestamp") LocalDateTime timestamp,
+            @Param("messageId") Long messageId,
+            Pageable pageable
     );
 
-    @Query("SELECT m FROM MessageEntity m WHERE " +
-            "(m.sender.id = :adminId AND m.receiver.id = :userId) OR " +
-            "(m.sender.id = :userId AND m.receiver.id = :adminId) " +
-            "ORDER BY m.timestamp ASC")
-    List<MessageEntity> findFullConversation(@Param("adminId") Long adminId, @Param("userId") Long userId);
+    default List<MessageDTO> findLatestInConversation(Long userA, Long userB, Pageable pageable) {
+        return findLatestByConversation(Math.min(userA, userB), Math.max(userA, userB), pageable);
+    }
+
+    default List<MessageDTO> findInConversationBefore(Long userA, Long userB, LocalDateTime timestamp, Long messageId, Pageable pageable) {
+        return findByConversationBefore(Math.min(userA, userB), Math.max(userA, userB), timestamp, messageId, pageable);
+    }
+
+    default List<MessageDTO> findInConversationAfter(Long userA, Long userB, LocalDateTime timestamp, Long messageId, Pageable pageable) {
+        return findByConversationAfter(Math.min(userA, userB), Math.max(userA, userB), timestamp, messageId, pageable);
+    }
+
+    // Messages after the client's last-seen sequence number, in sequence order (uk_messages_conversation_seq)
+    @Query(DTO_SELECT + "WHERE " + CONVERSATION + "AND m.sequence > :sequence ORDER BY m.sequence ASC")
+    List<MessageDTO> findByConversationAfterSequence(
+            @Param("low") Long low,
+            @Param("high") Long high,
+            @Param("sequence") Long sequence,
+            Pageable pageable
+    );
+
+    default List<MessageDTO> findInConversationAfterSequence(Long userA, Long userB, Long sequence, Pageable pageable) {
+        return findByConversationAfterSequence(Math.min(userA, userB), Math.max(userA, userB), sequence, pageable);
+    }
+
+    // Resolves a message-id cursor to its position in (timestamp, message_id) order
+    @Query("SELECT m.timestamp FROM MessageEntity m WHERE m.messageId = :messageId")
+    Optional<LocalDateTime> findTimestampById(@Param("messageId") Long messageId);
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,12 @@
+package com.example.GoogleContacts_Cultura.repository;
+
+import com.example.GoogleContacts_Cultura.entity.NotificationOutboxEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+// NotificationOutboxDispatcher reads and deletes with JDBC batches; this is for enqueueing and cleanup
+public interface NotificationOutboxRepo extends JpaRepository<NotificationOutboxEntity, Long> {
+
+    List<NotificationOutboxEntity> findByRecipientId(Long recipientId);
+}
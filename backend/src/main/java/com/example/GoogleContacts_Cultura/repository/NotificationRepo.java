@@ -2,11 +2,42 @@ package com.example.GoogleContacts_Cultura.repository;
 
 
 import com.example.GoogleContacts_Cultura.entity.NotificationEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface NotificationRepo extends JpaRepository<NotificationEntity, Long> {
     List<NotificationEntity> findByUserId(Long userId);
 
+    // Keyset pagination over idx_notification_user_timestamp, newest first
+    @Query("SELECT n FROM NotificationEntity n WHERE n.user.id = :userId ORDER BY n.timestamp DESC, n.id DESC")
+    List<NotificationEntity> findPageForUser(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("SELECT n FROM NotificationEntity n WHERE n.user.id = :userId " +
+            "AND (n.timestamp < :timestamp OR (n.timestamp = :timestamp AND n.id < :id)) " +
+            "ORDER BY n.timestamp DESC, n.id DESC")
+    List<NotificationEntity> findPageForUserAfter(
+            @Param("userId") Long userId,
+            @Param("timestamp") LocalDateTime timestamp,
+            @Param("id") Long id,
+            Pageable pageable);
+
+    long countByUserIdAndReadFalse(Long userId);
+
+    @Query("SELECT n FROM NotificationEntity n WHERE n.user.id = :userId AND n.read = false ORDER BY n.timestamp DESC, n.id DESC")
+    List<NotificationEntity> findUnreadForUser(@Param("userId") Long userId, Pageable pageable);
+
+    // One UPDATE over the user's unread rows instead of loading the table and saving it back
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE NotificationEntity n SET n.read = true WHERE n.user.id = :userId AND n.read = false")
+    int markAllReadForUser(@Param("userId") Long userId);
+
+    @Query("SELECT n.user.id FROM NotificationEntity n WHERE n.id = :id")
+    Long findUserIdById(@Param("id") Long id);
+
 }
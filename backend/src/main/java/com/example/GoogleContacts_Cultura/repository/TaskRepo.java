@@ -1,12 +1,18 @@
 package com.example.GoogleContacts_Cultura.repository;
 
+import com.example.GoogleContacts_Cultura.DTO.TaskSummary;
 import com.example.GoogleContacts_Cultura.entity.TaskEntity;
 import com.example.GoogleContacts_Cultura.entity.UserEntity;
+import com.example.GoogleContacts_Cultura.model.TaskStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -15,22 +21,84 @@ public interface TaskRepo extends JpaRepository<TaskEntity, Long> {
 //    List<TaskEntity> findByUser(UserEntity user);
     List<TaskEntity> findByUserId(Long userId);
     List<TaskEntity> findByAcceptedById(Long userId);
-    List<TaskEntity> findByStatus(String status);
-    List<TaskEntity> findByUserIdAndStatus(Long userId, String status);
+    List<TaskEntity> findByStatus(TaskStatus status);
+    List<TaskEntity> findByUserIdAndStatus(Long userId, TaskStatus status);
 
 
 
     // Fetch tasks based on their active status (ACTIVE/INACTIVE)
     List<TaskEntity> findByActiveStatus(String activeStatus);  // Now uses activeStatus
 
-    @Query("SELECT t FROM TaskEntity t WHERE t.status = 'Done' AND (t.user.id = :userId OR t.acceptedBy.id = :userId)")
-    List<TaskEntity> findDoneTasksByUserOrAccepter(@Param("userId") Long userId);
+    @Query("SELECT t FROM TaskEntity t WHERE t.status = :status AND (t.user.id = :userId OR t.acceptedBy.id = :userId)")
+    List<TaskEntity> findByParticipantAndStatus(@Param("userId") Long userId, @Param("status") TaskStatus status);
 
-    @Query("SELECT COUNT(t) > 0 FROM TaskEntity t WHERE t.user.id = :userId AND t.status = :status")
-    boolean existsByUserIdAndStatus(@Param("userId") Long userId, @Param("status") String status);
+    default List<TaskEntity> findDoneTasksByUserOrAccepter(Long userId) {
+        return findByParticipantAndStatus(userId, TaskStatus.DONE);
+    }
 
-    @Query("SELECT COUNT(t) > 0 FROM TaskEntity t WHERE t.acceptedBy.id = :userId AND t.status = :status")
-    boolean existsByAcceptedByIdAndStatus(@Param("userId") Long userId, @Param("status") String status);
+    // One probe covering both roles and all given statuses; callers pass PageRequest.of(0, 1) so it stops at the first hit
+    @Query("SELECT t.id FROM TaskEntity t WHERE (t.user.id = :userId OR t.acceptedBy.id = :userId) AND t.status IN :statuses")
+    List<Long> findOngoingTaskIds(@Param("userId") Long userId, @Param("statuses") Collection<TaskStatus> statuses, Pageable pageable);
 
+    // Rows of [Category, status, count], used to seed TaskFacetCounter at startup and on every reseed
+    @Query("SELECT t.category, t.status, COUNT(t) FROM TaskEntity t GROUP BY t.category, t.status")
+    List<Object[]> countByCategoryAndStatus();
+
+    // Rows of [posterId, accepted count, done count], used once at startup to seed TaskRecommender
+    @Query("SELECT t.user.id, COUNT(a), SUM(CASE WHEN t.status = :done THEN 1 ELSE 0 END) " +
+            "FROM TaskEntity t LEFT JOIN t.acceptedBy a GROUP BY t.user.id")
+    List<Object[]> countAcceptedAndDoneByPoster(@Param("done") TaskStatus done);
+
+    // Compare-and-set acceptance: only one concurrent caller can move an Open task to In Progress.
+    // Returns the number of rows updated (0 when the task is missing or no longer Open).
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE TaskEntity t SET t.acceptedBy = :acceptor, t.status = :target WHERE t.id = :taskId AND t.status = :expected")
+    int acceptIfStatus(@Param("taskId") Long taskId, @Param("acceptor") UserEntity acceptor,
+                       @Param("expected") TaskStatus expected, @Param("target") TaskStatus target);
+
+    default int acceptIfOpen(Long taskId, UserEntity acceptor) {
+        return acceptIfStatus(taskId, acceptor, TaskStatus.OPEN, TaskStatus.IN_PROGRESS);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+    // TaskSummary projections: one statement per list, no per-row user lookups
+
+    String SUMMARY_SELECT = "SELECT new com.example.GoogleContacts_Cultura.DTO.TaskSummary(" +
+            "t.id, t.title, t.description, t.category, t.status, t.timestamp, " +
+            "u.id, u.username, a.id, a.username, t.imageUrl) " +
+            "FROM TaskEntity t JOIN t.user u LEFT JOIN t.acceptedBy a ";
+
+    @Query(SUMMARY_SELECT + "ORDER BY t.id")
+    List<TaskSummary> findAllSummaries();
+
+    @Query(SUMMARY_SELECT + "WHERE t.status = :status ORDER BY t.timestamp DESC, t.id DESC")
+    List<TaskSummary> findSummariesByStatus(@Param("status") TaskStatus status);
+
+    @Query(SUMMARY_SELECT + "WHERE u.id = :userId ORDER BY t.timestamp DESC, t.id DESC")
+    List<TaskSummary> findSummariesByUserId(@Param("userId") Long userId);
+
+    @Query(SUMMARY_SELECT + "WHERE a.id = :userId ORDER BY t.timestamp DESC, t.id DESC")
+    List<TaskSummary> findSummariesByAcceptedById(@Param("userId") Long userId);
+
+    @Query(SUMMARY_SELECT + "WHERE t.status = :status AND (u.id = :userId OR a.id = :userId) ORDER BY t.timestamp DESC, t.id DESC")
+    List<TaskSummary> findSummariesByParticipantAndStatus(@Param("userId") Long userId, @Param("status") TaskStatus status);
+
+    default List<TaskSummary> findDoneSummariesByUserOrAccepter(Long userId) {
+        return findSummariesByParticipantAndStatus(userId, TaskStatus.DONE);
+    }
+
+    // Keyset pagination over idx_task_status_code_timestamp_id, newest first
+    @Query(SUMMARY_SELECT + "WHERE t.status = :status ORDER BY t.timestamp DESC, t.id DESC")
+    List<TaskSummary> findFeedPage(@Param("status") TaskStatus status, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "WHERE t.status = :status " +
+            "AND (t.timestamp < :timestamp OR (t.timestamp = :timestamp AND t.id < :id)) " +
+            "ORDER BY t.timestamp DESC, t.id DESC")
+    List<TaskSummary> findFeedPageAfter(
+            @Param("status") TaskStatus status,
+            @Param("timestamp") LocalDateTime timestamp,
+            @Param("id") Long id,
+            Pageable pageable
+    );
 
 }
@@ -0,0 +1,331 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+// Per-user read state for broadcast notifications (stored once, user_id NULL). Each user has a RunLengthBitmap of
+// the broadcast ids they have read, loaded on first use and written back to notification_read_state every
+// flush-ms. Read state only ever grows, so a flush merges with whatever is stored. A copy is dropped once it has
+// been flushed, after ttl-ms, or beyond max-users, so marks made on other instances reach this one on the next load.
+// The ids of all broadcasts are kept in one sorted array, so unread counts are O(runs * log broadcasts) without
+// touching the database. A user seen for the first time starts with every existing broadcast read.
+@Service
+public class BroadcastReadState {
+
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastReadState.class);
+
+    private static final int FLUSH_CHUNK = 500;
+
+    private static final String UPSERT_STATE = "INSERT INTO notification_read_state (user_id, read_broadcasts, updated_at) " +
+            "VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE read_broadcasts = VALUES(read_broadcasts), updated_at = VALUES(updated_at)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long ttlNanos;
+    private final int maxUsers;
+
+    private final Map<Long, UserState> readState = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    // Sorted ids of every broadcast; guarded by this. Lock order: a user's state, then this.
+    private long[] broadcastIds = new long[0];
+    private int broadcastCount;
+    private volatile boolean broadcastsLoaded; // set by the first refresh that reached the database
+
+    public BroadcastReadState(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              @Value("${collaboraid.notifications.read-state.ttl-ms:60000}") long ttlMillis,
+                              @Value("${collaboraid.notifications.read-state.max-users:50000}") int maxUsers) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+        this.maxUsers = Math.max(1, maxUsers);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        try {
+            refreshBroadcasts();
+            logger.info("Tracking read state for {} broadcast notifications", broadcastCount);
+        } catch (DataAccessException e) {
+            logger.warn("Could not load broadcast ids, retrying on the next flush", e);
+        }
+    }
+
+    // Picks up broadcasts stored since the last call, by this instance or another one
+    public void refreshBroadcasts() {
+        long known = lastBroadcastId();
+        List<Long> added = jdbcTemplate.queryForList(
+                "SELECT id FROM notification_entity WHERE user_id IS NULL AND id > ? ORDER BY id", Long.class, known);
+        if (added.isEmpty()) {
+            broadcastsLoaded = true;
+            return;
+        }
+        synchronized (this) {
+            for (Long id : added) {
+                if (broadcastCount == 0 || id > broadcastIds[broadcastCount - 1]) {
+                    if (broadcastCount == broadcastIds.length) {
+                        broadcastIds = Arrays.copyOf(broadcastIds, Math.max(64, broadcastCount * 2));
+                    }
+                    broadcastIds[broadcastCount++] = id;
+                }
+            }
+        }
+        broadcastsLoaded = true;
+    }
+
+    public synchronized void broadcastRemoved(long id) {
+        int index = Arrays.binarySearch(broadcastIds, 0, broadcastCount, id);
+        if (index >= 0) {
+            System.arraycopy(broadcastIds, index + 1, broadcastIds, index, broadcastCount - index - 1);
+            broadcastCount--;
+        }
+    }
+
+    public synchronized void allBroadcastsRemoved() {
+        broadcastIds = new long[0];
+        broadcastCount = 0;
+    }
+
+    public long unreadCount(Long userId) {
+        UserState state = state(userId);
+        synchronized (state) {
+            RunLengthBitmap bitmap = state.bitmap;
+            synchronized (this) {
+                long read = 0;
+                for (int run = 0; run < bitmap.runCount(); run++) {
+                    read += indexAfter(bitmap.end(run)) - indexOf(bitmap.start(run));
+                }
+                return broadcastCount - read;
+            }
+        }
+    }
+
+    // Newest first; skips whole read runs with a binary search instead of testing ids one by one
+    public List<Long> unreadIds(Long userId, int limit) {
+        UserState state = state(userId);
+        List<Long> unread = new ArrayList<>(Math.min(limit, 64));
+        synchronized (state) {
+            RunLengthBitmap bitmap = state.bitmap;
+            synchronized (this) {
+                int index = broadcastCount - 1;
+                while (index >= 0 && unread.size() < limit) {
+                    long id = broadcastIds[index];
+                    int run = bitmap.lastRunStartingAtOrBefore(id);
+                    if (run >= 0 && bitmap.end(run) >= id) {
+                        index = indexOf(bitmap.start(run)) - 1;
+                    } else {
+                        unread.add(id);
+                        index--;
+                    }
+                }
+            }
+        }
+        return unread;
+    }
+
+    // Broadcast ids are interleaved with direct notifications, so the ids between this broadcast and its
+    // neighbours are marked too: none of them is a broadcast, and it lets reads made one by one join into runs
+    public void markRead(Long userId, long broadcastId) {
+        long from;
+        long to;
+        synchronized (this) {
+            int index = Arrays.binarySearch(broadcastIds, 0, broadcastCount, broadcastId);
+            if (index < 0) {
+                from = broadcastId;
+                to = broadcastId;
+            } else {
+                from = index == 0 ? 0 : broadcastIds[index - 1] + 1;
+                to = index + 1 < broadcastCount ? broadcastIds[index + 1] - 1 : broadcastId;
+            }
+        }
+        update(userId, bitmap -> bitmap.addRange(from, to));
+    }
+
+    // Everything up to the newest broadcast known here; the dispatcher writes broadcasts in id order, so no
+    // earlier id can still appear later
+    public void markAllRead(Long userId) {
+        long last = lastBroadcastId();
+        update(userId, bitmap -> bitmap.addRange(0, last));
+    }
+
+    @Scheduled(fixedDelayString = "${collaboraid.notifications.read-state.flush-ms:5000}")
+    public void flush() {
+        try {
+            refreshBroadcasts();
+        } catch (DataAccessException e) {
+            logger.warn("Could not refresh broadcast ids", e);
+        }
+        List<Long> users = new ArrayList<>(dirty);
+        users.forEach(dirty::remove); // marks made during the write re-add their user and go out next time
+        for (int from = 0; from < users.size(); from += FLUSH_CHUNK) {
+            List<Long> chunk = users.subList(from, Math.min(users.size(), from + FLUSH_CHUNK));
+            try {
+                transactionTemplate.executeWithoutResult(status -> persist(chunk));
+                chunk.forEach(this::evict); // the stored row is now the merged state; reload from it next time
+            } catch (DataAccessException e) {
+                logger.warn("Could not persist broadcast read state for {} users, retrying later", chunk.size(), e);
+                dirty.addAll(chunk);
+            }
+        }
+        evictStale();
+    }
+
+    @PreDestroy
+    public void stop() {
+        flush();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private UserState state(Long userId) {
+        UserState state = readState.get(userId);
+        if (state != null) {
+            return state;
+        }
+        if (!broadcastsLoaded) {
+            refreshBroadcasts(); // startup could not reach the database; a new user must not start from no broadcasts
+        }
+        // Loaded outside the map so the query does not run inside a ConcurrentHashMap bin lock
+        List<byte[]> stored = jdbcTemplate.queryForList(
+                "SELECT read_broadcasts FROM notification_read_state WHERE user_id = ?", byte[].class, userId);
+        RunLengthBitmap loaded;
+        if (stored.isEmpty()) {
+            loaded = new RunLengthBitmap();
+            loaded.addRange(0, lastBroadcastId());
+        } else {
+            loaded = RunLengthBitmap.fromBytes(stored.get(0));
+        }
+        UserState created = new UserState(loaded, System.nanoTime());
+        UserState existing = readState.putIfAbsent(userId, created);
+        if (existing != null) {
+            return existing;
+        }
+        if (stored.isEmpty()) {
+            dirty.add(userId);
+        }
+        return created;
+    }
+
+    // Retries on a fresh copy if the state was evicted meanwhile, so a mark never lands on a discarded bitmap
+    private void update(Long userId, Predicate<RunLengthBitmap> change) {
+        while (true) {
+            UserState state = state(userId);
+            synchronized (state) {
+                if (state.evicted) {
+                    continue;
+                }
+                if (change.test(state.bitmap)) {
+                    dirty.add(userId);
+                }
+                return;
+            }
+        }
+    }
+
+    // Clean copies go after ttl-ms, and beyond max-users regardless of age; unflushed marks stay until their flush
+    private void evictStale() {
+        long now = System.nanoTime();
+        int excess = readState.size() - maxUsers;
+        for (Map.Entry<Long, UserState> entry : readState.entrySet()) {
+            boolean expired = now - entry.getValue().loadedAt >= ttlNanos;
+            if ((expired || excess > 0) && evict(entry.getKey())) {
+                excess--;
+            }
+        }
+    }
+
+    private boolean evict(Long userId) {
+        UserState state = readState.get(userId);
+        if (state == null) {
+            return false;
+        }
+        synchronized (state) {
+            if (state.evicted || dirty.contains(userId)) {
+                return false;
+            }
+            state.evicted = true;
+            return readState.remove(userId, state);
+        }
+    }
+
+    // Union with the stored state under a row lock, so marks made on another instance are never overwritten
+    private void persist(List<Long> users) {
+        String placeholders = String.join(",", Collections.nCopies(users.size(), "?"));
+        Map<Long, byte[]> stored = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, read_broadcasts FROM notification_read_state WHERE user_id IN (" + placeholders + ") FOR UPDATE",
+                rs -> {
+                    stored.put(rs.getLong("user_id"), rs.getBytes("read_broadcasts"));
+                }, users.toArray());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(users.size());
+        for (Long userId : users) {
+            UserState state = readState.get(userId);
+            if (state == null) {
+                continue;
+            }
+            RunLengthBitmap bitmap = state.bitmap;
+            byte[] bytes;
+            synchronized (state) {
+                byte[] existing = stored.get(userId);
+                if (existing != null) {
+                    bitmap.or(RunLengthBitmap.fromBytes(existing));
+                }
+                bytes = bitmap.toBytes();
+            }
+            rows.add(new Object[]{userId, bytes, now});
+        }
+        jdbcTemplate.batchUpdate(UPSERT_STATE, rows);
+    }
+
+    private synchronized long lastBroadcastId() {
+        return broadcastCount == 0 ? 0 : broadcastIds[broadcastCount - 1];
+    }
+
+    // Caller holds this. Index of the first broadcast id >= value.
+    private int indexOf(long value) {
+        int index = Arrays.binarySearch(broadcastIds, 0, broadcastCount, value);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    // Caller holds this. Index of the first broadcast id > value.
+    private int indexAfter(long value) {
+        int index = Arrays.binarySearch(broadcastIds, 0, broadcastCount, value);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    // One user's bitmap; lock it to read or change the bitmap. Once evicted it is never changed again.
+    private static final class UserState {
+        private final RunLengthBitmap bitmap;
+        private final long loadedAt;
+        private boolean evicted; // guarded by this
+
+        UserState(RunLengthBitmap bitmap, long loadedAt) {
+            this.bitmap = bitmap;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import com.example.GoogleContacts_Cultura.DTO.InboxEntry;
+import com.example.GoogleContacts_Cultura.entity.MessageEntity;
+import com.example.GoogleContacts_Cultura.repository.ConversationSummaryRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+// Keeps conversation_summary in step with messages: two upserts per message (one per side), a reset on read.
+// The same upserts allocate each message's per-conversation sequence number.
+@Service
+public class InboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InboxService.class);
+
+    private static final int PREVIEW_LENGTH = 255;
+
+    private final ConversationSummaryRepo summaryRepo;
+
+    public InboxService(ConversationSummaryRepo summaryRepo) {
+        this.summaryRepo = summaryRepo;
+    }
+
+    // Called from the send transaction, so the message and both summary rows commit together.
+    // Returns the message's sequence number: the upserts hold both rows locked until commit, so sends in one
+    // conversation are numbered 1, 2, 3, ... in commit order and a rolled-back send gives its number back.
+    @Transactional
+    public long recordMessage(MessageEntity message) {
+        Long senderId = message.getSender().getId();
+        Long receiverId = message.getReceiver().getId();
+        String preview = preview(message.getContent());
+
+        // Always lock the (low, high) side first so sends in opposite directions cannot deadlock
+        Long low = Math.min(senderId, receiverId);
+        Long high = Math.max(senderId, receiverId);
+        summaryRepo.upsert(low, high, message.getMessageId(), preview, message.getTimestamp(), senderId,
+                low.equals(receiverId) && !low.equals(high) ? 1 : 0);
+        if (!low.equals(high)) {
+            summaryRepo.upsert(high, low, message.getMessageId(), preview, message.getTimestamp(), senderId,
+                    high.equals(receiverId) ? 1 : 0);
+        }
+        return summaryRepo.findLastSequence(senderId, receiverId);
+    }
+
+    public List<InboxEntry> getInbox(Long userId) {
+        return summaryRepo.findInbox(userId);
+    }
+
+    @Transactional
+    public void markRead(Long userId, Long peerId) {
+        summaryRepo.markRead(userId, peerId);
+    }
+
+    // First start after the table was introduced: derive it from the existing messages
+    @Transactional
+    public void rebuildIfEmpty() {
+        if (summaryRepo.count() > 0) {
+            return;
+        }
+        int rows = summaryRepo.rebuildFromMessages();
+        if (rows > 0) {
+            logger.info("Built {} conversation summaries from message history", rows);
+        }
+    }
+
+    static String preview(String content) {
+        if (content == null || content.length() <= PREVIEW_LENGTH) {
+            return content;
+        }
+        return content.substring(0, PREVIEW_LENGTH);
+    }
+}
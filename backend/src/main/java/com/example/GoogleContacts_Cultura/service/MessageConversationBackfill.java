@@ -0,0 +1,68 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Fills messages.conversation_low/high and conversation_seq for rows written before those columns existed,
+// then derives conversation_summary from them if the inbox table is still empty.
+// Once every row is numbered, a startup costs one EXISTS probe instead of the full-table passes.
+@Component
+public class MessageConversationBackfill implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageConversationBackfill.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InboxService inboxService;
+
+    public MessageConversationBackfill(JdbcTemplate jdbcTemplate, InboxService inboxService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.inboxService = inboxService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!hasUnnumberedMessages()) {
+            inboxService.rebuildIfEmpty();
+            return;
+        }
+
+        int rows = jdbcTemplate.update("UPDATE messages " +
+                "SET conversation_low = LEAST(sender_id, receiver_id), conversation_high = GREATEST(sender_id, receiver_id) " +
+                "WHERE conversation_low IS NULL AND sender_id IS NOT NULL AND receiver_id IS NOT NULL");
+        if (rows > 0) {
+            logger.info("Backfilled the conversation key for {} messages", rows);
+        }
+
+        // Number older messages in (timestamp, message_id) order within each conversation (MySQL 8 window function)
+        int numbered = jdbcTemplate.update("UPDATE messages m JOIN (" +
+                "SELECT message_id, ROW_NUMBER() OVER (PARTITION BY conversation_low, conversation_high " +
+                "ORDER BY timestamp, message_id) AS seq FROM messages WHERE conversation_low IS NOT NULL) numbered " +
+                "ON numbered.message_id = m.message_id " +
+                "SET m.conversation_seq = numbered.seq WHERE m.conversation_seq IS NULL");
+        if (numbered > 0) {
+            logger.info("Backfilled sequence numbers for {} messages", numbered);
+        }
+
+        inboxService.rebuildIfEmpty();
+
+        // Summaries created before sequences existed start at 0; catch them up to the highest numbered message
+        int summaries = jdbcTemplate.update("UPDATE conversation_summary c JOIN (" +
+                "SELECT conversation_low, conversation_high, MAX(conversation_seq) AS last_seq FROM messages " +
+                "WHERE conversation_seq IS NOT NULL GROUP BY conversation_low, conversation_high) seqs " +
+                "ON seqs.conversation_low = LEAST(c.owner_id, c.peer_id) AND seqs.conversation_high = GREATEST(c.owner_id, c.peer_id) " +
+                "SET c.last_sequence = seqs.last_seq WHERE c.last_sequence < seqs.last_seq");
+        if (summaries > 0) {
+            logger.info("Caught up last_sequence on {} conversation summaries", summaries);
+        }
+    }
+
+    // Rows without a sender or receiver can never be numbered, so they do not count
+    private boolean hasUnnumberedMessages() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM messages " +
+                "WHERE conversation_seq IS NULL AND sender_id IS NOT NULL AND receiver_id IS NOT NULL)", Boolean.class));
+    }
+}
@@ -1,52 +1,76 @@
 package com.example.GoogleContacts_Cultura.service;
 
+import com.example.GoogleContacts_Cultura.DTO.ConversationSync;
+import com.example.GoogleContacts_Cultura.DTO.InboxEntry;
 import com.example.GoogleContacts_Cultura.DTO.MessageInputDTO;
+import com.example.GoogleContacts_Cultura.DTO.MessagePage;
+import com.example.GoogleContacts_Cultura.model.Role;
 import com.example.GoogleContacts_Cultura.entity.MessageEntity;
 import com.example.GoogleContacts_Cultura.DTO.MessageDTO;
 import com.example.GoogleContacts_Cultura.repository.MessageRepo;
 import com.example.GoogleContacts_Cultura.entity.UserEntity;
 import com.example.GoogleContacts_Cultura.entity.MessageEntity;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @Service
 public class MessageService {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+    public static final int DEFAULT_SYNC_SIZE = 100;
+    public static final int MAX_SYNC_CONVERSATIONS = 100;
 
     private final MessageRepo repository;
     private final UserService userService;
+    private final InboxService inboxService;
+    private final MessageWriteBehind writeBehind;
+    private final TransactionTemplate transactionTemplate;
 
-    public MessageService(MessageRepo repository, UserService userService) {
+    public MessageService(MessageRepo repository, UserService userService, InboxService inboxService,
+                          MessageWriteBehind writeBehind, TransactionTemplate transactionTemplate) {
         this.repository = repository;
         this.userService = userService;
+        this.inboxService = inboxService;
+        this.writeBehind = writeBehind;
+        this.transactionTemplate = transactionTemplate;
     }
 
-    // Send message method
+    // Send message method. Only the synchronous path runs in a transaction: in write-behind mode nothing is
+    // written here, and a sender pushed back by a full queue should not be holding a pooled connection.
     public MessageDTO sendMessage(Long senderId, Long receiverId, String content) {
-        // Fetch sender and receiver UserEntity objects by ID
-        UserEntity sender = userService.findById(senderId).orElseThrow(() -> new RuntimeException("Sender not found"));
-        UserEntity receiver = userService.findById(receiverId).orElseThrow(() -> new RuntimeException("Receiver not found"));
-
-        // Create and save the message using the user IDs, not the full UserEntity objects
-        MessageEntity message = new MessageEntity(sender, receiver, content, LocalDateTime.now());
-        MessageEntity savedMessage = repository.save(message);
-
-        // Return MessageDTO with sender and receiver UserEntity objects
-        return new MessageDTO(savedMessage, sender, receiver);
+        // Broadcast-first mode: id and sequence are assigned now, the row is written by the next batch
+        if (writeBehind.isEnabled()) {
+            return writeBehind.enqueue(findSender(senderId), findReceiver(receiverId), content);
+        }
+
+        return transactionTemplate.execute(status -> {
+            // Fetch sender and receiver UserEntity objects by ID
+            UserEntity sender = findSender(senderId);
+            UserEntity receiver = findReceiver(receiverId);
+
+            // Create and save the message using the user IDs, not the full UserEntity objects
+            MessageEntity message = new MessageEntity(sender, receiver, content, LocalDateTime.now());
+            MessageEntity savedMessage = repository.save(message);
+            savedMessage.setSequence(inboxService.recordMessage(savedMessage));
+
+            // Return MessageDTO with sender and receiver UserEntity objects
+            return new MessageDTO(savedMessage, sender, receiver);
+        });
     }
 
     // Get all messages
     public List<MessageDTO> getAllMessages() {
-        List<MessageEntity> messages = repository.findAll();
-        return messages.stream()
-                .map(messageEntity -> {
-                    UserEntity sender = userService.findById(messageEntity.getSender().getId()).orElseThrow(() -> new RuntimeException("Sender not found"));
-                    UserEntity receiver = userService.findById(messageEntity.getReceiver().getId()).orElseThrow(() -> new RuntimeException("Receiver not found"));
-                    return new MessageDTO(messageEntity, sender, receiver);
-                })
-                .collect(Collectors.toList());
+        return repository.findAllMessageDTOs();
     }
 
 
@@ -54,44 +78,53 @@ public class MessageService {
     //----------------------------------------------------------------------------------------------------------------------------------
 
     public List<MessageDTO> getMessagesSentByUser(Long senderId) {
-        List<MessageEntity> messages = repository.findBySenderId(senderId);
-        return messages.stream().map(this::convertToDTO).toList();
+        return repository.findMessageDTOsBySenderId(senderId);
     }
 
     public List<MessageDTO> getMessagesReceivedByUser(Long receiverId) {
-        List<MessageEntity> messages = repository.findByReceiverId(receiverId);
-        return messages.stream().map(this::convertToDTO).toList();
+        return repository.findMessageDTOsByReceiverId(receiverId);
     }
 
     public List<MessageDTO> getMessagesBetweenUsersWithToken(Long senderId, Long receiverId) {
-        // Fetch messages sent by the sender to the receiver
-        List<MessageEntity> messages = repository.findBySenderIdAndReceiverId(senderId, receiverId);
-        // Fetch messages sent by the receiver to the sender (reverse)
-        messages.addAll(repository.findBySenderIdAndReceiverId(receiverId, senderId));
-        return messages.stream().map(this::convertToDTO).toList();
+        // Both directions in one ordered range scan on the conversation key
+        return repository.findConversation(senderId, receiverId);
     }
 
+    // Same split as sendMessage: no transaction around the write-behind path
     public MessageDTO sendMessageWithToken(Long senderId, MessageInputDTO requestDTO) {
-        // Fetch the sender UserEntity from the database
-        UserEntity sender = userService.findById(senderId)
-                .orElseThrow(() -> new RuntimeException("Sender not found"));
-
-        // Fetch the receiver UserEntity using the receiverId from the input DTO
-        UserEntity receiver = userService.findById(requestDTO.getReceiverId())
-                .orElseThrow(() -> new RuntimeException("Receiver not found"));
-
-        // Create a new message entity
-        MessageEntity messageEntity = new MessageEntity();
-        messageEntity.setSender(sender);
-        messageEntity.setReceiver(receiver);
-        messageEntity.setContent(requestDTO.getContent());
-        messageEntity.setTimestamp(LocalDateTime.now());
+        if (writeBehind.isEnabled()) {
+            return writeBehind.enqueue(findSender(senderId), findReceiver(requestDTO.getReceiverId()), requestDTO.getContent());
+        }
+
+        return transactionTemplate.execute(status -> {
+            // Fetch the sender UserEntity from the database
+            UserEntity sender = findSender(senderId);
+
+            // Fetch the receiver UserEntity using the receiverId from the input DTO
+            UserEntity receiver = findReceiver(requestDTO.getReceiverId());
+
+            // Create a new message entity
+            MessageEntity messageEntity = new MessageEntity();
+            messageEntity.setSender(sender);
+            messageEntity.setReceiver(receiver);
+            messageEntity.setContent(requestDTO.getContent());
+            messageEntity.setTimestamp(LocalDateTime.now());
+
+            // Save the message to the database
+            MessageEntity savedMessage = repository.save(messageEntity);
+            savedMessage.setSequence(inboxService.recordMessage(savedMessage));
+
+            // Return the saved message as a DTO
+            return convertToDTO(savedMessage);
+        });
+    }
 
-        // Save the message to the database
-        MessageEntity savedMessage = repository.save(messageEntity);
+    private UserEntity findSender(Long senderId) {
+        return userService.findById(senderId).orElseThrow(() -> new RuntimeException("Sender not found"));
+    }
 
-        // Return the saved message as a DTO
-        return convertToDTO(savedMessage);
+    private UserEntity findReceiver(Long receiverId) {
+        return userService.findById(receiverId).orElseThrow(() -> new RuntimeException("Receiver not found"));
     }
 
 
@@ -109,13 +142,8 @@ public class MessageService {
 
     // Get a specific message by ID
     public MessageDTO getMessageById(Long messageId) {
-        MessageEntity messageEntity = repository.findById(messageId)
+        return repository.findMessageDTOById(messageId)
                 .orElseThrow(() -> new RuntimeException("Message not found"));
-        UserEntity sender = userService.findById(messageEntity.getSender().getId())
-                .orElseThrow(() -> new RuntimeException("Sender not found"));
-        UserEntity receiver = userService.findById(messageEntity.getReceiver().getId())
-                .orElseThrow(() -> new RuntimeException("Receiver not found"));
-        return new MessageDTO(messageEntity, sender, receiver);
     }
 
     // Delete a message by ID
@@ -125,36 +153,116 @@ public class MessageService {
 
     // Get messages between two users
     public List<MessageDTO> getMessagesBetweenUsers(Long senderId, Long receiverId) {
-        List<MessageEntity> messages = repository.findMessagesBetweenUsers(senderId, receiverId);
-        return mapToMessageDTO(messages);
+        return repository.findMessagesBetweenUsers(senderId, receiverId);
     }
 
     // Get messages between user and admin (USER -> ADMIN)
     public List<MessageDTO> getMessagesFromUserToAdmin(Long userId, Long adminId) {
-        List<MessageEntity> messages = repository.findMessagesFromUserToAdmin(userId, adminId);
-        return mapToMessageDTO(messages);
+        return repository.findMessagesFromUserToAdmin(userId, adminId);
     }
 
     // Get messages between admin and user (ADMIN -> USER)
     public List<MessageDTO> getMessagesFromAdminToUser(Long adminId, Long userId) {
-        List<MessageEntity> messages = repository.findMessagesFromAdminToUser(adminId, userId);
-        return mapToMessageDTO(messages);
+        return repository.findMessagesFromAdminToUser(adminId, userId);
     }
 
     public List<MessageDTO> getFullConversationBetween(Long adminId, Long userId) {
-        List<MessageEntity> allMessages = repository.findFullConversation(adminId, userId);
-        return mapToMessageDTO(allMessages);
+        return repository.findFullConversation(adminId, userId);
     }
 
+    //----------------------------------------------------------------------------------------------------------------------------------
+    // Inbox: one row per conversation partner from conversation_summary
+
+    public List<InboxEntry> getInbox(Long userId) {
+        return inboxService.getInbox(userId);
+    }
+
+    public void markConversationRead(Long userId, Long peerId) {
+        inboxService.markRead(userId, peerId);
+    }
+
+    //----------------------------------------------------------------------------------------------------------------------------------
+    // Paged conversations: the latest page when opening a chat, then ?before= to scroll up and ?after= to catch up
+
+    public MessagePage getConversationPage(Long userA, Long userB, Long before, Long after, Integer limit) {
+        if (before != null && after != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Use either before or after, not both");
+        }
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1); // one extra row tells us if there is more
+
+        List<MessageDTO> messages;
+        if (after != null) {
+            messages = repository.findInConversationAfter(userA, userB, cursorTimestamp(after), after, pageRequest);
+        } else if (before != null) {
+            messages = repository.findInConversationBefore(userA, userB, cursorTimestamp(before), before, pageRequest);
+        } else {
+            messages = repository.findLatestInConversation(userA, userB, pageRequest);
+        }
+
+        boolean hasMore = messages.size() > pageSize;
+        List<MessageDTO> page = new ArrayList<>(hasMore ? messages.subList(0, pageSize) : messages);
+        if (after == null) {
+            Collections.reverse(page); // fetched newest first, returned oldest first
+        }
+        return new MessagePage(page, hasMore);
+    }
+
+    // Same USER <-> USER restriction as getMessagesBetweenUsers
+    public MessagePage getUserConversationPage(Long senderId, Long receiverId, Long before, Long after, Integer limit) {
+        boolean bothUsers = userService.findById(senderId).map(user -> user.getRole() == Role.USER).orElse(false)
+                && userService.findById(receiverId).map(user -> user.getRole() == Role.USER).orElse(false);
+        if (!bothUsers) {
+            return new MessagePage(List.of(), false);
+        }
+        return getConversationPage(senderId, receiverId, before, after, limit);
+    }
+
+    //----------------------------------------------------------------------------------------------------------------------------------
+    // Resume after reconnect: the client sends the last sequence it saw per conversation and gets exactly what it missed
+
+    public List<ConversationSync> syncSince(Long userId, String since, Integer limit) {
+        Map<Long, Long> lastSeen = parseSince(since);
+        int pageSize = limit == null ? DEFAULT_SYNC_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+
+        List<ConversationSync> result = new ArrayList<>(lastSeen.size());
+        for (Map.Entry<Long, Long> entry : lastSeen.entrySet()) {
+            List<MessageDTO> missed = repository.findInConversationAfterSequence(userId, entry.getKey(), entry.getValue(), pageRequest);
+            boolean hasMore = missed.size() > pageSize;
+            if (!missed.isEmpty()) {
+                result.add(new ConversationSync(entry.getKey(), hasMore ? missed.subList(0, pageSize) : missed, hasMore));
+            }
+        }
+        return result;
+    }
+
+    // "peerId:sequence,peerId:sequence"
+    private static Map<Long, Long> parseSince(String since) {
+        Map<Long, Long> lastSeen = new LinkedHashMap<>();
+        if (since == null || since.isBlank()) {
+            return lastSeen;
+        }
+        for (String part : since.split(",")) {
+            String[] pair = part.trim().split(":");
+            try {
+                if (pair.length != 2) {
+                    throw new NumberFormatException(part);
+                }
+                lastSeen.put(Long.parseLong(pair[0].trim()), Math.max(0, Long.parseLong(pair[1].trim())));
+            } catch (NumberFormatException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid since entry: " + part);
+            }
+            if (lastSeen.size() > MAX_SYNC_CONVERSATIONS) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "At most " + MAX_SYNC_CONVERSATIONS + " conversations per sync");
+            }
+        }
+        return lastSeen;
+    }
 
-    // Helper method to map MessageEntity to MessageDTO
-    private List<MessageDTO> mapToMessageDTO(List<MessageEntity> messages) {
-        return messages.stream()
-                .map(messageEntity -> {
-                    UserEntity sender = userService.findById(messageEntity.getSender().getId()).orElseThrow(() -> new RuntimeException("Sender not found"));
-                    UserEntity receiver = userService.findById(messageEntity.getReceiver().getId()).orElseThrow(() -> new RuntimeException("Receiver not found"));
-                    return new MessageDTO(messageEntity, sender, receiver);
-                })
-                .collect(Collectors.toList());
+    private LocalDateTime cursorTimestamp(Long messageId) {
+        return repository.findTimestampById(messageId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid message cursor"));
     }
 }
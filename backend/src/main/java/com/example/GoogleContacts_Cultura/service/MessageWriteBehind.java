@@ -0,0 +1,347 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import com.example.GoogleContacts_Cultura.DTO.MessageDTO;
+import com.example.GoogleContacts_Cultura.entity.UserEntity;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Opt-in broadcast-first persistence (collaboraid.messages.write-behind.enabled). The message id and the
+// conversation sequence are assigned in memory, the caller fans the message out straight away, and a single
+// flusher thread writes messages plus their conversation_summary rows as JDBC batches every batch-size
+// messages or flush-interval-ms. A full queue fails the send with 503 straight away; nothing waits for room.
+// A row is never dropped once its sequence went out: one the database rejects for good goes to message_dead_letter,
+// and while any other failure persists the flusher retries it and new sends get 503.
+// Queued messages survive a graceful shutdown (drained in @PreDestroy) but not a crash, and ids are only
+// unique with a single backend instance, so the synchronous path stays the default.
+@Service
+public class MessageWriteBehind {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageWriteBehind.class);
+
+    private static final int MAX_BATCH_ATTEMPTS = 5;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 30_000;
+    private static final long MAX_STALL_BACKOFF_MILLIS = 5_000;
+
+    private static final String INSERT_MESSAGE = "INSERT INTO messages " +
+            "(message_id, sender_id, receiver_id, content, timestamp, conversation_low, conversation_high, conversation_seq) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_DEAD_LETTER = "INSERT INTO message_dead_letter " +
+            "(message_id, sender_id, receiver_id, content, timestamp, conversation_low, conversation_high, conversation_seq, error, failed_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Same forward-only rules as ConversationSummaryRepo.upsert, but the sequence is already known
+    private static final String UPSERT_SUMMARY = "INSERT INTO conversation_summary " +
+            "(owner_id, peer_id, last_message_id, last_message_content, last_message_timestamp, last_sender_id, unread_count, last_sequence) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "unread_count = unread_count + VALUES(unread_count), " +
+            "last_sequence = GREATEST(last_sequence, VALUES(last_sequence)), " +
+            "last_message_content = IF(last_message_id IS NULL OR VALUES(last_message_id) > last_message_id, VALUES(last_message_content), last_message_content), " +
+            "last_message_timestamp = IF(last_message_id IS NULL OR VALUES(last_message_id) > last_message_id, VALUES(last_message_timestamp), last_message_timestamp), " +
+            "last_sender_id = IF(last_message_id IS NULL OR VALUES(last_message_id) > last_message_id, VALUES(last_sender_id), last_sender_id), " +
+            "last_message_id = GREATEST(COALESCE(last_message_id, 0), VALUES(last_message_id))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+
+    private final BlockingQueue<PendingMessage> queue;
+    private final AtomicLong lastMessageId = new AtomicLong();
+    // Only conversations with messages in flight: an entry is dropped once everything numbered from it is written
+    private final ConcurrentHashMap<ConversationKey, AtomicLong> lastSequences = new ConcurrentHashMap<>();
+    private final Object enqueueLock = new Object();
+
+    private volatile boolean accepting;
+    private volatile boolean running;
+    private volatile boolean stalled; // the flusher is retrying a row that keeps failing
+    private Thread flusher;
+
+    public MessageWriteBehind(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${collaboraid.messages.write-behind.enabled:false}") boolean enabled,
+                              @Value("${collaboraid.messages.write-behind.batch-size:200}") int batchSize,
+                              @Value("${collaboraid.messages.write-behind.flush-interval-ms:50}") long flushIntervalMillis,
+                              @Value("${collaboraid.messages.write-behind.queue-capacity:10000}") int queueCapacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        meterRegistry.gauge("collaboraid.messages.write_behind.queued", queue, BlockingQueue::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        lastMessageId.set(jdbcTemplate.queryForObject("SELECT COALESCE(MAX(message_id), 0) FROM messages", Long.class));
+        running = true;
+        accepting = true;
+        flusher = new Thread(this::runFlusher, "message-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+        logger.info("Message write-behind enabled: batches of {} every {} ms, queue capacity {}",
+                batchSize, flushIntervalMillis, queue.remainingCapacity());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Assigns id and sequence and queues the message; the returned DTO can be broadcast immediately
+    public MessageDTO enqueue(UserEntity sender, UserEntity receiver, String content) {
+        if (!accepting) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Messaging is shutting down");
+        }
+        if (stalled) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Messages cannot be stored right now, try again");
+        }
+        ConversationKey key = new ConversationKey(Math.min(sender.getId(), receiver.getId()), Math.max(sender.getId(), receiver.getId()));
+        while (true) {
+            AtomicLong sequence = lastSequence(key);
+
+            // Numbering and queueing happen under one lock so the queue is in sequence order: every flushed batch is a
+            // prefix of what was sent, and /sync can never see sequence n+1 persisted while n is still queued.
+            synchronized (enqueueLock) {
+                if (lastSequences.get(key) != sequence) {
+                    continue; // released by a flush after we looked it up; reload from what was written
+                }
+                    PendingMessage message = new PendingMessage(lastMessageId.incrementAndGet(), sender, receiver, content,
+                        LocalDateTime.now(), key, sequence.incrementAndGet());
+                // Never blocks: every sender queues behind this lock, so the full-queue case is pushed back to the client
+                if (!queue.offer(message)) {
+                    // Nothing else was numbered meanwhile (we hold the lock), so both counters can be given back
+                    lastMessageId.decrementAndGet();
+                    sequence.decrementAndGet();
+                    throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many messages in flight, try again");
+                }
+                return message.toDTO();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        accepting = false;
+        synchronized (enqueueLock) {
+            running = false; // no enqueue is half-way through; the flusher drains what is left and exits
+        }
+        flusher.join(SHUTDOWN_TIMEOUT_MILLIS);
+        if (!queue.isEmpty()) {
+            logger.error("Message write-behind stopped with {} messages still queued", queue.size());
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private AtomicLong lastSequence(ConversationKey key) {
+        AtomicLong sequence = lastSequences.get(key);
+        if (sequence != null) {
+            return sequence;
+        }
+        // Loaded outside the map so the query does not run inside a ConcurrentHashMap bin lock
+        Long persisted = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(conversation_seq), 0) FROM messages " +
+                "WHERE conversation_low = ? AND conversation_high = ?", Long.class, key.low(), key.high());
+        AtomicLong loaded = new AtomicLong(persisted);
+        AtomicLong existing = lastSequences.putIfAbsent(key, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private void runFlusher() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Wait out the rest of the interval unless the batch fills up first
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                running = false; // still drain before exiting
+            }
+        }
+    }
+
+    // Retries the whole batch with backoff; if it keeps failing, writes row by row so one bad message
+    // (e.g. a user deleted meanwhile) does not hold up every conversation behind it
+    private void flush(List<PendingMessage> batch) {
+        for (int attempt = 1; attempt <= MAX_BATCH_ATTEMPTS; attempt++) {
+            try {
+                write(batch);
+                release(batch, Set.of());
+                return;
+            } catch (RuntimeException e) {
+                logger.warn("Write-behind batch of {} messages failed (attempt {}/{})", batch.size(), attempt, MAX_BATCH_ATTEMPTS, e);
+                try {
+                    Thread.sleep(Math.min(1000L, 50L << attempt));
+                } catch (InterruptedException interrupted) {
+                    running = false;
+                }
+            }
+        }
+        Set<ConversationKey> deadLettered = new HashSet<>();
+        for (PendingMessage message : batch) {
+            if (!writeOne(message)) {
+                deadLettered.add(message.key());
+            }
+        }
+        release(batch, deadLettered);
+    }
+
+    // False if the row went to message_dead_letter. A rejection (constraint violation) will never succeed, so it
+    // is parked there. Anything else may pass, so the row is retried in place and new sends are refused meanwhile:
+    // skipping it would leave a hole in its conversation that /sync could step over.
+    private boolean writeOne(PendingMessage message) {
+        long backoffMillis = 100;
+        try {
+            while (true) {
+                try {
+                    write(List.of(message));
+                    return true;
+                } catch (DataIntegrityViolationException e) {
+                    deadLetter(message, e);
+                    return false;
+                } catch (RuntimeException e) {
+                    if (!running) {
+                        logger.error("Shutting down with message {} (conversation {}-{}, sequence {}) unwritten",
+                                message.messageId(), message.key().low(), message.key().high(), message.sequence(), e);
+                        return true;
+                    }
+                    if (!stalled) {
+                        stalled = true;
+                        logger.error("Write-behind stalled on message {}, refusing new messages until it is written",
+                                message.messageId(), e);
+                    }
+                    try {
+                        Thread.sleep(backoffMillis);
+                    } catch (InterruptedException interrupted) {
+                        running = false;
+                    }
+                    backoffMillis = Math.min(MAX_STALL_BACKOFF_MILLIS, backoffMillis * 2);
+                }
+            }
+        } finally {
+            stalled = false;
+        }
+    }
+
+    private void deadLetter(PendingMessage message, DataIntegrityViolationException cause) {
+        String error = String.valueOf(cause.getMostSpecificCause().getMessage());
+        try {
+            jdbcTemplate.update(INSERT_DEAD_LETTER, message.messageId(), message.sender().getId(), message.receiver().getId(),
+                    message.content(), Timestamp.valueOf(message.timestamp()), message.key().low(), message.key().high(),
+                    message.sequence(), error.length() > 500 ? error.substring(0, 500) : error, Timestamp.valueOf(LocalDateTime.now()));
+            logger.error("Message {} (conversation {}-{}, sequence {}) rejected by the database, moved to message_dead_letter",
+                    message.messageId(), message.key().low(), message.key().high(), message.sequence(), cause);
+        } catch (DataAccessException e) {
+            logger.error("Could not dead-letter message {} (conversation {}-{}, sequence {}): {}", message.messageId(),
+                    message.key().low(), message.key().high(), message.sequence(), message.content(), e);
+        }
+    }
+
+    // Everything in the batch is written, so a conversation with nothing numbered since can reload its sequence from
+    // messages. Conversations with a dead-lettered row keep theirs, since messages no longer holds their last number.
+    private void release(List<PendingMessage> written, Set<ConversationKey> keep) {
+        Map<ConversationKey, Long> highest = new HashMap<>();
+        for (PendingMessage message : written) {
+            highest.merge(message.key(), message.sequence(), Math::max);
+        }
+        synchronized (enqueueLock) {
+            highest.forEach((key, sequence) -> {
+                AtomicLong current = lastSequences.get(key);
+                if (current != null && current.get() == sequence && !keep.contains(key)) {
+                    lastSequences.remove(key);
+                }
+            });
+        }
+    }
+
+    private void write(List<PendingMessage> batch) {
+        List<Object[]> messageRows = new ArrayList<>(batch.size());
+        List<Object[]> summaryRows = new ArrayList<>(batch.size() * 2);
+        for (PendingMessage message : batch) {
+            Long senderId = message.sender().getId();
+            Long receiverId = message.receiver().getId();
+            Timestamp timestamp = Timestamp.valueOf(message.timestamp());
+            String preview = InboxService.preview(message.content());
+            messageRows.add(new Object[]{message.messageId(), senderId, receiverId, message.content(), timestamp,
+                    message.key().low(), message.key().high(), message.sequence()});
+
+            // Low side first, like InboxService.recordMessage, so this never deadlocks with a synchronous send
+            ConversationKey key = message.key();
+            summaryRows.add(new Object[]{key.low(), key.high(), message.messageId(), preview, timestamp, senderId,
+                    key.low().equals(receiverId) && !key.low().equals(key.high()) ? 1 : 0, message.sequence()});
+            if (!key.low().equals(key.high())) {
+                summaryRows.add(new Object[]{key.high(), key.low(), message.messageId(), preview, timestamp, senderId,
+                        key.high().equals(receiverId) ? 1 : 0, message.sequence()});
+            }
+        }
+        // One round trip per statement type when the driver has rewriteBatchedStatements=true
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_MESSAGE, messageRows);
+            jdbcTemplate.batchUpdate(UPSERT_SUMMARY, summaryRows);
+        });
+    }
+
+    private record ConversationKey(Long low, Long high) {}
+
+    private record PendingMessage(long messageId, UserEntity sender, UserEntity receiver, String content,
+                                  LocalDateTime timestamp, ConversationKey key, long sequence) {
+
+        MessageDTO toDTO() {
+            return new MessageDTO(messageId, sender.getId(), sender.getUsername(), sender.getEmail(), sender.getRole(),
+                    receiver.getId(), receiver.getUsername(), receiver.getEmail(), receiver.getRole(),
+                    content, timestamp, sequence);
+        }
+    }
+}
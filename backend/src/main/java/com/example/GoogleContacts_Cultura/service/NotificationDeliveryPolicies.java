@@ -0,0 +1,81 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import com.example.GoogleContacts_Cultura.model.NotificationDelivery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Delivery policy per notification type, plus the digest wording. Types fire in bursts at peak hours
+// (a task feed refresh, a wave of sign-ups) default to COALESCE; everything else is IMMEDIATE.
+// Override with collaboraid.notifications.delivery.<TYPE>=immediate|coalesce|digest. Overrides are parsed at
+// startup, so a typo fails the boot instead of the business transaction that enqueues a notification.
+@Component
+public class NotificationDeliveryPolicies {
+
+    private static final Map<String, NotificationDelivery> DEFAULTS = Map.of(
+            "TASK_ADDED", NotificationDelivery.COALESCE,
+            "USER_REGISTERED", NotificationDelivery.COALESCE);
+
+    private static final int MAX_DIGEST_DETAILS = 5;
+
+    private final long windowMillis;
+    private final Map<String, NotificationDelivery> policies;
+
+    public NotificationDeliveryPolicies(Environment environment,
+                                        @Value("${collaboraid.notifications.coalesce-window-ms:5000}") long windowMillis) {
+        this.windowMillis = Math.max(0, windowMillis);
+        Map<String, NotificationDelivery> policies = new HashMap<>(DEFAULTS);
+        Binder.get(environment)
+                .bind("collaboraid.notifications.delivery", Bindable.mapOf(String.class, String.class))
+                .orElse(Map.of())
+                .forEach((type, configured) -> policies.put(type.toUpperCase(Locale.ROOT), parse(type, configured)));
+        this.policies = Map.copyOf(policies);
+    }
+
+    public NotificationDelivery policyFor(String type) {
+        if (type == null || windowMillis == 0) {
+            return NotificationDelivery.IMMEDIATE;
+        }
+        return policies.getOrDefault(type, NotificationDelivery.IMMEDIATE);
+    }
+
+    public long windowMillis() {
+        return windowMillis;
+    }
+
+    // "12 new tasks in PROGRAMMING, MATHEMATICS"; details are whatever the sender attached (a task's category)
+    public static String digestMessage(String type, int count, Collection<String> details) {
+        String what = switch (type) {
+            case "TASK_ADDED" -> count + " new tasks";
+            case "USER_REGISTERED" -> count + " new users registered";
+            default -> count + " new notifications";
+        };
+        if (details.isEmpty()) {
+            return what;
+        }
+        List<String> shown = details.stream().limit(MAX_DIGEST_DETAILS).toList();
+        String more = details.size() > shown.size() ? " and " + (details.size() - shown.size()) + " more" : "";
+        return what + " in " + String.join(", ", shown) + more;
+    }
+
+    public static String digestType(String type) {
+        return type + "_DIGEST";
+    }
+
+    private static NotificationDelivery parse(String type, String configured) {
+        try {
+            return NotificationDelivery.valueOf(configured.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("collaboraid.notifications.delivery." + type
+                    + " must be immediate, coalesce or digest, not '" + configured + "'", e);
+        }
+    }
+}
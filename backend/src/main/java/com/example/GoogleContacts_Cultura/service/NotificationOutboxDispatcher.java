@@ -0,0 +1,420 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import com.example.GoogleContacts_Cultura.DTO.NotificationDTO;
+import com.example.GoogleContacts_Cultura.model.NotificationChannel;
+import com.example.GoogleContacts_Cultura.model.NotificationDelivery;
+import com.example.GoogleContacts_Cultura.websocket.MessageBus;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Drains notification_outbox: stores the notifications with one JDBC batch, deletes the outbox rows in the same
+// transaction, and pushes over the MessageBus once that has committed. A pass holds a MySQL named lock on a
+// connection of its own from the first claim to the last push, so with several backend instances only one
+// dispatches at a time and pushes never overtake each other.
+// Order is kept per recipient (and for broadcasts as a whole): a row waiting out a retry blocks every later row
+// with the same recipient, while other recipients carry on. A row that keeps failing is dropped after
+// max-attempts with an error log, so one broken notification cannot stall its recipient forever.
+// Types with a COALESCE or DIGEST policy (NotificationDeliveryPolicies) are held in the outbox for their window,
+// then everything of that type for one destination goes out as a single digest frame.
+@Service
+public class NotificationOutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationOutboxDispatcher.class);
+
+    private static final String LOCK_NAME = "collaboraid_notification_outbox";
+    private static final long MAX_BACKOFF_SECONDS = 300;
+
+    private static final String SELECT_COLUMNS = "SELECT id, message, type, detail, channel, recipient_id, recipient_email, created_at, attempts " +
+            "FROM notification_outbox ";
+
+    private static final String INSERT_NOTIFICATION = "INSERT INTO notification_entity (message, type, timestamp, is_read, user_id, channel) " +
+            "VALUES (?, ?, ?, false, ?, ?)";
+
+    private static final RowMapper<OutboxRow> ROW_MAPPER = (rs, rowNum) -> new OutboxRow(
+            rs.getLong("id"),
+            rs.getString("message"),
+            rs.getString("type"),
+            rs.getString("detail"),
+            NotificationChannel.valueOf(rs.getString("channel")),
+            rs.getObject("recipient_id", Long.class),
+            rs.getString("recipient_email"),
+            rs.getTimestamp("created_at").toLocalDateTime(),
+            rs.getInt("attempts"));
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageBus messageBus;
+    private final NotificationService notificationService;
+    private final BroadcastReadState broadcastReadState;
+    private final NotificationDeliveryPolicies deliveryPolicies;
+    private final NotificationReplayBuffer replayBuffer;
+    private final MeterRegistry meterRegistry;
+    private final int batchSize;
+    private final int maxAttempts;
+
+    public NotificationOutboxDispatcher(DataSource dataSource,
+                                        JdbcTemplate jdbcTemplate,
+                                        TransactionTemplate transactionTemplate,
+                                        MessageBus messageBus,
+                                        NotificationService notificationService,
+                                        BroadcastReadState broadcastReadState,
+                                        NotificationDeliveryPolicies deliveryPolicies,
+                                        NotificationReplayBuffer replayBuffer,
+                                        MeterRegistry meterRegistry,
+                                        @Value("${collaboraid.notifications.outbox.batch-size:200}") int batchSize,
+                                        @Value("${collaboraid.notifications.outbox.max-attempts:8}") int maxAttempts) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.messageBus = messageBus;
+        this.notificationService = notificationService;
+        this.broadcastReadState = broadcastReadState;
+        this.deliveryPolicies = deliveryPolicies;
+        this.replayBuffer = replayBuffer;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    // Keeps going while batches come back full, so a backlog is drained in one run rather than one batch per poll
+    @Scheduled(fixedDelayString = "${collaboraid.notifications.outbox.poll-ms:250}")
+    public void dispatch() {
+        // Not the transaction's connection: the lock has to outlive each batch's commit and cover its pushes
+        try (Connection lockConnection = dataSource.getConnection()) {
+            if (!namedLock(lockConnection, "SELECT GET_LOCK(?, 0)")) {
+                replayBuffer.dispatchedElsewhere(); // another instance holds the lock
+                return;
+            }
+            try {
+                drain();
+            } finally {
+                namedLock(lockConnection, "SELECT RELEASE_LOCK(?)");
+            }
+        } catch (SQLException | DataAccessException e) {
+            logger.warn("Notification outbox pass failed", e);
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    // Caller holds the lock
+    private void drain() {
+        replayBuffer.resync();
+        while (true) {
+            Pass pass = transactionTemplate.execute(this::dispatchBatch);
+            if (pass == null) {
+                return;
+            }
+            pass.delivered().forEach(delivery -> replayBuffer.stored(delivery.notificationId));
+            if (pass.delivered().stream().anyMatch(delivery -> delivery.first().channel() != NotificationChannel.DIRECT)) {
+                broadcastReadState.refreshBroadcasts(); // before the push, so a client reacting to it sees the new count
+            }
+            pass.delivered().forEach(this::push);
+            if (pass.claimed() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    // GET_LOCK and RELEASE_LOCK both answer 1 on success
+    private static boolean namedLock(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, LOCK_NAME);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() && result.getInt(1) == 1;
+            }
+        }
+    }
+
+    private Pass dispatchBatch(TransactionStatus status) {
+        List<OutboxRow> ready = claimable();
+        if (ready.isEmpty()) {
+            return new Pass(0, List.of());
+        }
+        List<Delivery> deliveries = deliveries(ready);
+        Object savepoint = status.createSavepoint();
+        try {
+            store(deliveries);
+            status.releaseSavepoint(savepoint);
+            return new Pass(ready.size(), deliveries);
+        } catch (DataAccessException e) {
+            status.rollbackToSavepoint(savepoint);
+            logger.warn("Notification outbox batch of {} failed, retrying one delivery at a time", ready.size(), e);
+            return new Pass(ready.size(), storeOneByOne(status, deliveries));
+        }
+    }
+
+    // Due rows in id order, minus any row queued behind a not-yet-due row with the same ordering key
+    private List<OutboxRow> claimable() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<OutboxRow> due = jdbcTemplate.query(SELECT_COLUMNS + "WHERE next_attempt_at <= ? ORDER BY id LIMIT ?",
+                ROW_MAPPER, now, batchSize);
+        if (due.isEmpty()) {
+            return due;
+        }
+        Map<OrderingKey, Long> firstWaiting = new HashMap<>();
+        jdbcTemplate.query("SELECT channel, recipient_id, type, MIN(id) AS first_id FROM notification_outbox " +
+                        "WHERE next_attempt_at > ? GROUP BY channel, recipient_id, type",
+                rs -> {
+                    firstWaiting.merge(orderingKey(NotificationChannel.valueOf(rs.getString("channel")),
+                            rs.getObject("recipient_id", Long.class), rs.getString("type")), rs.getLong("first_id"), Math::min);
+                }, now);
+        if (firstWaiting.isEmpty()) {
+            return due;
+        }
+        List<OutboxRow> ready = new ArrayList<>(due.size());
+        for (OutboxRow row : due) {
+            Long blockedFrom = firstWaiting.get(orderingKey(row));
+            if (blockedFrom == null || row.id() < blockedFrom) {
+                ready.add(row);
+            }
+        }
+        return ready;
+    }
+
+    // IMMEDIATE rows are delivered alone. A due row of a coalesced type anchors a window: every row for the same
+    // destination and type created within the window after it joins the delivery, due or not.
+    private List<Delivery> deliveries(List<OutboxRow> ready) {
+        List<Delivery> deliveries = new ArrayList<>(ready.size());
+        Set<Long> taken = new HashSet<>();
+        for (OutboxRow row : ready) {
+            if (!taken.add(row.id())) {
+                continue;
+            }
+            NotificationDelivery policy = deliveryPolicies.policyFor(row.type());
+            if (policy == NotificationDelivery.IMMEDIATE) {
+                deliveries.add(new Delivery(policy, List.of(row)));
+                continue;
+            }
+            LocalDateTime windowEnd = row.createdAt().plus(deliveryPolicies.windowMillis(), ChronoUnit.MILLIS);
+            List<OutboxRow> window = jdbcTemplate.query(SELECT_COLUMNS +
+                            "WHERE channel = ? AND recipient_id <=> ? AND type = ? AND id >= ? AND created_at < ? ORDER BY id LIMIT ?",
+                    ROW_MAPPER, row.channel().name(), row.recipientId(), row.type(), row.id(), Timestamp.valueOf(windowEnd), batchSize);
+            window.removeIf(member -> member.id() != row.id() && !taken.add(member.id()));
+            deliveries.add(new Delivery(policy, window.isEmpty() ? List.of(row) : window));
+        }
+        return deliveries;
+    }
+
+    // One round trip per statement when the driver has rewriteBatchedStatements=true
+    private void store(List<Delivery> deliveries) {
+        List<Object[]> inserts = new ArrayList<>(deliveries.size());
+        List<Delivery> insertedFor = new ArrayList<>(deliveries.size());
+        List<Object[]> deletes = new ArrayList<>(deliveries.size());
+        for (Delivery delivery : deliveries) {
+            OutboxRow last = delivery.last();
+            Long userId = last.channel() == NotificationChannel.DIRECT ? last.recipientId() : null;
+            if (delivery.isDigest() && delivery.policy() == NotificationDelivery.DIGEST) {
+                inserts.add(new Object[]{delivery.digestMessage(), delivery.digestType(), Timestamp.valueOf(last.createdAt()), userId,
+                        last.channel().name()});
+                insertedFor.add(delivery);
+            } else {
+                for (OutboxRow row : delivery.rows()) {
+                    inserts.add(new Object[]{row.message(), row.type(), Timestamp.valueOf(row.createdAt()), userId,
+                            row.channel().name()});
+                    insertedFor.add(delivery);
+                }
+            }
+            for (OutboxRow row : delivery.rows()) {
+                deletes.add(new Object[]{row.id()});
+            }
+        }
+        long[] ids = insertNotifications(inserts);
+        for (int i = 0; i < ids.length; i++) {
+            insertedFor.get(i).notificationId = ids[i]; // rows are inserted in order, so the newest one's id wins
+        }
+        jdbcTemplate.batchUpdate("DELETE FROM notification_outbox WHERE id = ?", deletes);
+    }
+
+    // batchUpdate cannot return generated keys; the ids become the frames' replay sequence
+    private long[] insertNotifications(List<Object[]> rows) {
+        return jdbcTemplate.execute((ConnectionCallback<long[]>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_NOTIFICATION, Statement.RETURN_GENERATED_KEYS)) {
+                for (Object[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        statement.setObject(i + 1, row[i]);
+                    }
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                long[] ids = new long[rows.size()];
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    for (int i = 0; i < ids.length && keys.next(); i++) {
+                        ids[i] = keys.getLong(1);
+                    }
+                }
+                return ids;
+            }
+        });
+    }
+
+    // Each delivery behind its own savepoint; after a failure the rest of that ordering key waits for the retry
+    private List<Delivery> storeOneByOne(TransactionStatus status, List<Delivery> deliveries) {
+        List<Delivery> delivered = new ArrayList<>(deliveries.size());
+        Set<OrderingKey> failed = new HashSet<>();
+        for (Delivery delivery : deliveries) {
+            OrderingKey key = orderingKey(delivery.first());
+            if (failed.contains(key)) {
+                continue;
+            }
+            Object savepoint = status.createSavepoint();
+            try {
+                store(List.of(delivery));
+                status.releaseSavepoint(savepoint);
+                delivered.add(delivery);
+            } catch (DataAccessException e) {
+                status.rollbackToSavepoint(savepoint);
+                failed.add(key);
+                delivery.rows().forEach(row -> recordFailure(row, e));
+            }
+        }
+        return delivered;
+    }
+
+    private void recordFailure(OutboxRow row, DataAccessException error) {
+        int attempts = row.attempts() + 1;
+        if (attempts >= maxAttempts) {
+            logger.error("Dropping notification {} ({} for {} {}) after {} attempts: {}", row.id(), row.type(),
+                    row.channel(), row.recipientId(), attempts, row.message(), error);
+            jdbcTemplate.update("DELETE FROM notification_outbox WHERE id = ?", row.id());
+            meterRegistry.counter("collaboraid.notifications.outbox.dropped").increment();
+            return;
+        }
+        long backoffSeconds = Math.min(MAX_BACKOFF_SECONDS, 1L << attempts);
+        String message = String.valueOf(error.getMostSpecificCause().getMessage());
+        jdbcTemplate.update("UPDATE notification_outbox SET attempts = ?, next_attempt_at = ?, last_error = ? WHERE id = ?",
+                attempts, Timestamp.valueOf(LocalDateTime.now().plusSeconds(backoffSeconds)),
+                message.length() > 500 ? message.substring(0, 500) : message, row.id());
+        meterRegistry.counter("collaboraid.notifications.outbox.retries").increment();
+    }
+
+    // The notifications are already stored; a push that fails is only logged, clients also read /api/notifications
+    private void push(Delivery delivery) {
+        OutboxRow last = delivery.last();
+        if (last.channel() == NotificationChannel.DIRECT) {
+            notificationService.unreadChanged(last.recipientId());
+        }
+        NotificationDTO notification;
+        if (delivery.isDigest()) {
+            notification = new NotificationDTO(delivery.notificationId, delivery.digestMessage(), delivery.digestType(), last.createdAt());
+            meterRegistry.counter("collaboraid.notifications.coalesced", "type", last.type()).increment(delivery.rows().size() - 1);
+        } else {
+            notification = new NotificationDTO(delivery.notificationId, last.message(), last.type(), last.createdAt());
+        }
+        String destination = switch (last.channel()) {
+            case BROADCAST -> NotificationReplayBuffer.BROADCAST_TOPIC;
+            case ALL_USERS -> NotificationReplayBuffer.ALL_USERS_TOPIC;
+            case DIRECT -> last.recipientEmail() == null
+                    ? null : MessageBus.userDestination(last.recipientEmail(), NotificationReplayBuffer.USER_QUEUE);
+        };
+        if (destination == null) {
+            return;
+        }
+        replayBuffer.record(destination, notification); // before the send, so a client subscribing meanwhile cannot miss it
+        try {
+            if (last.channel() == NotificationChannel.DIRECT) {
+                messageBus.convertAndSendToUser(last.recipientEmail(), NotificationReplayBuffer.USER_QUEUE, notification);
+            } else {
+                messageBus.convertAndSend(destination, notification);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not push notification {} over WebSocket", last.id(), e);
+        }
+    }
+
+    private OrderingKey orderingKey(OutboxRow row) {
+        return orderingKey(row.channel(), row.recipientId(), row.type());
+    }
+
+    // Both topic channels share one order and direct notifications are ordered per recipient. A coalesced type has
+    // its own order per destination, so rows held back for its window never delay other notifications.
+    private OrderingKey orderingKey(NotificationChannel channel, Long recipientId, String type) {
+        if (deliveryPolicies.policyFor(type) != NotificationDelivery.IMMEDIATE) {
+            return new OrderingKey(channel, recipientId, type);
+        }
+        return channel == NotificationChannel.DIRECT
+                ? new OrderingKey(channel, recipientId, null)
+                : new OrderingKey(NotificationChannel.BROADCAST, null, null);
+    }
+
+    private record Pass(int claimed, List<Delivery> delivered) {}
+
+    private record OrderingKey(NotificationChannel channel, Long recipientId, String type) {}
+
+    private record OutboxRow(long id, String message, String type, String detail, NotificationChannel channel,
+                             Long recipientId, String recipientEmail, LocalDateTime createdAt, int attempts) {}
+
+    // Rows of one destination and type, in id order, that reach clients as one frame
+    private static final class Delivery {
+        private final NotificationDelivery policy;
+        private final List<OutboxRow> rows;
+        private long notificationId; // id of the newest stored notification, set by store()
+
+        Delivery(NotificationDelivery policy, List<OutboxRow> rows) {
+            this.policy = policy;
+            this.rows = rows;
+        }
+
+        NotificationDelivery policy() {
+            return policy;
+        }
+
+        List<OutboxRow> rows() {
+            return rows;
+        }
+
+        OutboxRow first() {
+            return rows.get(0);
+        }
+
+        OutboxRow last() {
+            return rows.get(rows.size() - 1);
+        }
+
+        boolean isDigest() {
+            return rows.size() > 1;
+        }
+
+        String digestType() {
+            return NotificationDeliveryPolicies.digestType(first().type());
+        }
+
+        String digestMessage() {
+            Set<String> details = new LinkedHashSet<>();
+            for (OutboxRow row : rows) {
+                if (row.detail() != null) {
+                    details.add(row.detail());
+                }
+            }
+            return NotificationDeliveryPolicies.digestMessage(first().type(), rows.size(), details);
+        }
+    }
+}
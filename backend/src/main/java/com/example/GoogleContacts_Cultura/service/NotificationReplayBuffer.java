@@ -0,0 +1,216 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import com.example.GoogleContacts_Cultura.DTO.NotificationDTO;
+import com.example.GoogleContacts_Cultura.model.NotificationChannel;
+import com.example.GoogleContacts_Cultura.websocket.MessageBus;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Recent notification frames per destination, so a reconnecting client gets what it missed from memory instead
+// of a NotificationRepo query. Frames are stamped with their notification id. Each ring knows its floor: every
+// frame for the destination with a higher id is still in it, so a replay from lastSeenId >= floor is complete and
+// anything older falls back to the database.
+// Only the dispatcher thread writes (see NotificationOutboxDispatcher); readers never lock. The rings only see
+// what this instance dispatched, so every pass compares the newest stored notification with the newest one this
+// instance dispatched: a gap means another instance dispatched meanwhile, and every ring's coverage is reset to
+// "from the next notification on".
+@Service
+public class NotificationReplayBuffer {
+
+    public static final String BROADCAST_TOPIC = "/topic/notifications";
+    public static final String ALL_USERS_TOPIC = "/topic/notifications/user";
+    public static final String USER_QUEUE = "/queue/notifications";
+
+    public static final int MAX_REPLAY = 100;
+
+    private static final RowMapper<NotificationDTO> ROW_MAPPER = (rs, rowNum) -> new NotificationDTO(
+            rs.getLong("id"),
+            rs.getString("message"),
+            rs.getString("type"),
+            rs.getTimestamp("timestamp") == null ? null : rs.getTimestamp("timestamp").toLocalDateTime());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int topicCapacity;
+    private final int userCapacity;
+    private final int maxUserRings;
+
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+
+    // Written by the dispatcher thread only
+    private volatile long globalFloor = Long.MAX_VALUE; // nothing is covered until the first dispatch pass
+    private volatile boolean synced;
+    private volatile long lastStoredId; // newest notification this instance dispatched, or found stored at a resync
+    private volatile long lastRecordedId;
+    private volatile long evictedRingFloor; // rings created after an eviction start from here
+
+    public NotificationReplayBuffer(JdbcTemplate jdbcTemplate,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${collaboraid.notifications.replay.topic-capacity:256}") int topicCapacity,
+                                    @Value("${collaboraid.notifications.replay.user-capacity:32}") int userCapacity,
+                                    @Value("${collaboraid.notifications.replay.max-user-rings:10000}") int maxUserRings) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.topicCapacity = topicCapacity;
+        this.userCapacity = userCapacity;
+        this.maxUserRings = Math.max(1, maxUserRings);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+    // Writer side, called by the dispatcher
+
+    // Called at the start of every pass, holding the dispatch lock: from here on this instance sees every new
+    // notification. Anything stored above what it dispatched itself went out elsewhere while it was idle.
+    void resync() {
+        long newest = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM notification_entity", Long.class);
+        if (!synced || newest > lastStoredId) {
+            globalFloor = newest;
+            synced = true;
+        }
+        lastStoredId = Math.max(lastStoredId, newest);
+    }
+
+    // Called once a batch has committed, for every notification it stored, pushed or not
+    void stored(long notificationId) {
+        lastStoredId = Math.max(lastStoredId, notificationId);
+    }
+
+    // Another instance holds the dispatch lock, so notifications may be going out that these rings never see
+    void dispatchedElsewhere() {
+        if (synced) {
+            synced = false;
+            globalFloor = Long.MAX_VALUE;
+        }
+    }
+
+    void record(String destination, NotificationDTO notification) {
+        Ring ring = rings.get(destination);
+        if (ring == null) {
+            boolean topic = !destination.startsWith("/user/");
+            if (!topic && rings.size() >= maxUserRings) {
+                evictUserRing();
+            }
+            ring = new Ring(topic ? topicCapacity : userCapacity, evictedRingFloor);
+            rings.put(destination, ring);
+        }
+        ring.add(notification);
+        lastRecordedId = Math.max(lastRecordedId, notification.getId());
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+    // Reader side, any thread
+
+    public List<NotificationDTO> replayTopic(String topic, long lastSeenId) {
+        List<NotificationDTO> missed = fromRing(topic, lastSeenId);
+        if (missed != null) {
+            return missed;
+        }
+        // Both topics store their notifications without a user; the channel tells them apart like the rings do
+        NotificationChannel channel = ALL_USERS_TOPIC.equals(topic) ? NotificationChannel.ALL_USERS : NotificationChannel.BROADCAST;
+        return jdbcTemplate.query("SELECT id, message, type, timestamp FROM notification_entity " +
+                "WHERE user_id IS NULL AND COALESCE(channel, 'BROADCAST') = ? AND id > ? ORDER BY id LIMIT ?",
+                ROW_MAPPER, channel.name(), lastSeenId, MAX_REPLAY);
+    }
+
+    // userId may be null, e.g. for a SUBSCRIBE handled before PresenceService has seen the CONNECT
+    public List<NotificationDTO> replayForUser(Long userId, String email, long lastSeenId) {
+        List<NotificationDTO> missed = fromRing(MessageBus.userDestination(email, USER_QUEUE), lastSeenId);
+        if (missed != null) {
+            return missed;
+        }
+        if (userId == null) {
+            return jdbcTemplate.query("SELECT n.id, n.message, n.type, n.timestamp FROM notification_entity n " +
+                    "JOIN userss u ON u.id = n.user_id WHERE u.email = ? AND n.id > ? ORDER BY n.id LIMIT ?",
+                    ROW_MAPPER, email, lastSeenId, MAX_REPLAY);
+        }
+        return jdbcTemplate.query("SELECT id, message, type, timestamp FROM notification_entity " +
+                "WHERE user_id = ? AND id > ? ORDER BY id LIMIT ?", ROW_MAPPER, userId, lastSeenId, MAX_REPLAY);
+    }
+
+    // Broadcasts and the user's own notifications after lastSeenId, oldest first
+    public List<NotificationDTO> replayAll(Long userId, String email, long lastSeenId) {
+        List<NotificationDTO> missed = new ArrayList<>(replayTopic(BROADCAST_TOPIC, lastSeenId));
+        missed.addAll(replayForUser(userId, email, lastSeenId));
+        missed.sort(Comparator.comparing(NotificationDTO::getId));
+        return missed.size() > MAX_REPLAY ? missed.subList(0, MAX_REPLAY) : missed;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    // null when the ring cannot prove it holds everything after lastSeenId
+    private List<NotificationDTO> fromRing(String destination, long lastSeenId) {
+        Ring ring = rings.get(destination);
+        List<NotificationDTO> missed = ring == null ? List.of() : ring.after(lastSeenId);
+        // Floors are read after the slots: a frame overwritten while we read has already raised the ring's floor
+        long floor = Math.max(globalFloor, ring == null ? evictedRingFloor : ring.floor);
+        if (lastSeenId < floor) {
+            meterRegistry.counter("collaboraid.notifications.replay", "source", "database").increment();
+            return null;
+        }
+        meterRegistry.counter("collaboraid.notifications.replay", "source", "memory").increment();
+        return missed.size() > MAX_REPLAY ? missed.subList(0, MAX_REPLAY) : missed; // the client asks again from the last id
+    }
+
+    private void evictUserRing() {
+        evictedRingFloor = lastRecordedId; // anything for an evicted user is older than this
+        Iterator<String> destinations = rings.keySet().iterator();
+        while (destinations.hasNext()) {
+            if (destinations.next().startsWith("/user/")) {
+                destinations.remove();
+                return;
+            }
+        }
+    }
+
+    // Single-writer ring of immutable entries; readers check each slot's position to spot overwritten entries
+    private static final class Ring {
+        private final AtomicReferenceArray<Entry> slots;
+        private final int mask;
+        private volatile long head;  // number of frames written
+        private volatile long floor; // id of the newest frame no longer held
+
+        Ring(int capacity, long floor) {
+            int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+            this.slots = new AtomicReferenceArray<>(size);
+            this.mask = size - 1;
+            this.floor = floor;
+        }
+
+        void add(NotificationDTO notification) {
+            long position = head;
+            int index = (int) (position & mask);
+            Entry evicted = slots.get(index);
+            if (evicted != null) {
+                floor = Math.max(floor, evicted.notification().getId()); // before the slot is overwritten
+            }
+            slots.set(index, new Entry(position, notification));
+            head = position + 1;
+        }
+
+        List<NotificationDTO> after(long lastSeenId) {
+            long end = head;
+            long start = Math.max(0, end - slots.length());
+            List<NotificationDTO> missed = new ArrayList<>();
+            for (long position = start; position < end; position++) {
+                Entry entry = slots.get((int) (position & mask));
+                if (entry != null && entry.position() == position && entry.notification().getId() > lastSeenId) {
+                    missed.add(entry.notification());
+                }
+            }
+            return missed;
+        }
+    }
+
+    private record Entry(long position, NotificationDTO notification) {}
+}
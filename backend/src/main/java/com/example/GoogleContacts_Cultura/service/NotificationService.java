@@ -1,73 +1,100 @@
 package com.example.GoogleContacts_Cultura.service;
 
+import com.example.GoogleContacts_Cultura.DTO.NotificationCursor;
 import com.example.GoogleContacts_Cultura.DTO.NotificationDTO;
+import com.example.GoogleContacts_Cultura.DTO.NotificationPage;
+import com.example.GoogleContacts_Cultura.DTO.UserNotification;
 import com.example.GoogleContacts_Cultura.entity.NotificationEntity;
+import com.example.GoogleContacts_Cultura.entity.NotificationOutboxEntity;
 import com.example.GoogleContacts_Cultura.entity.UserEntity;
+import com.example.GoogleContacts_Cultura.model.NotificationChannel;
+import com.example.GoogleContacts_Cultura.model.NotificationDelivery;
+import com.example.GoogleContacts_Cultura.repository.NotificationOutboxRepo;
 import com.example.GoogleContacts_Cultura.repository.NotificationRepo;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 @Service
 public class NotificationService {
 
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final int UNREAD_VERSION_STRIPES = 64;
+
+    private static final Comparator<UserNotification> NEWEST_FIRST = Comparator
+            .comparing(UserNotification::getTimestamp, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(UserNotification::getId, Comparator.reverseOrder());
+
     private final NotificationRepo notificationRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final NotificationOutboxRepo notificationOutboxRepo;
+    private final BroadcastReadState broadcastReadState;
+    private final NotificationDeliveryPolicies deliveryPolicies;
+    private final NotificationReplayBuffer replayBuffer;
+    private final long unreadCountTtlMillis;
+
+    // userId -> unread direct notifications
+    private final Map<Long, UnreadCount> unreadCounts = new ConcurrentHashMap<>();
+    // Bumped by unreadChanged for users in the stripe; a count loaded across a bump is not cached
+    private final AtomicLongArray unreadVersions = new AtomicLongArray(UNREAD_VERSION_STRIPES);
 
     @Autowired
-    public NotificationService(NotificationRepo notificationRepository, SimpMessagingTemplate messagingTemplate) {
+    public NotificationService(NotificationRepo notificationRepository, NotificationOutboxRepo notificationOutboxRepo,
+                               BroadcastReadState broadcastReadState,
+                               NotificationDeliveryPolicies deliveryPolicies,
+                               NotificationReplayBuffer replayBuffer,
+                               @Value("${collaboraid.notifications.unread-count-ttl-ms:30000}") long unreadCountTtlMillis) {
         this.notificationRepository = notificationRepository;
-        this.messagingTemplate = messagingTemplate;
+        this.notificationOutboxRepo = notificationOutboxRepo;
+        this.broadcastReadState = broadcastReadState;
+        this.deliveryPolicies = deliveryPolicies;
+        this.replayBuffer = replayBuffer;
+        this.unreadCountTtlMillis = unreadCountTtlMillis;
     }
 
+    // The send methods only append to the outbox, inside the caller's transaction when there is one: the
+    // notification is committed or rolled back together with the change it announces, and the caller never
+    // waits on the notification insert or the WebSocket push. NotificationOutboxDispatcher does both.
     public void sendNotification(String message, String type) {
-        // Save to database
-        NotificationEntity notification = new NotificationEntity();
-        notification.setMessage(message);
-        notification.setType(type);
-        notification.setTimestamp(LocalDateTime.now());
-        notificationRepository.save(notification);
+        sendNotification(message, type, null);
+    }
 
-        // Send over WebSocket
-        NotificationDTO notificationDTO = new NotificationDTO(message, type, LocalDateTime.now());
-        messagingTemplate.convertAndSend("/topic/notifications", notificationDTO);
+    // detail is a short label listed when the type is delivered as a digest ("... in PROGRAMMING, MATHEMATICS")
+    public void sendNotification(String message, String type, String detail) {
+        enqueue(message, type, detail, NotificationChannel.BROADCAST, null);
     }
+
     public List<NotificationEntity> getAllNotifications() {
         return notificationRepository.findAll();
     }
 
     public void sendNotificationUser(String message, String type) {
-        // Save to database
-        NotificationEntity notification = new NotificationEntity();
-        notification.setMessage(message);
-        notification.setType(type);
-        notification.setTimestamp(LocalDateTime.now());
-        notificationRepository.save(notification);
-
-        // Send over WebSocket
-        NotificationDTO notificationDTO = new NotificationDTO(message, type, LocalDateTime.now());
-        messagingTemplate.convertAndSend("/topic/notifications/user", notificationDTO);
+        enqueue(message, type, null, NotificationChannel.ALL_USERS, null);
     }
 
     public void sendNotificationToUser(String message, String type, UserEntity user) {
-        // Save to DB
-        NotificationEntity notification = new NotificationEntity();
-        notification.setMessage(message);
-        notification.setType(type);
-        notification.setUser(user); // associate with the user
-        notification.setTimestamp(LocalDateTime.now());
-        notificationRepository.save(notification);
+        enqueue(message, type, null, NotificationChannel.DIRECT, user);
+    }
 
-        // Send over WebSocket to user-specific destination
-        NotificationDTO notificationDTO = new NotificationDTO(message, type, notification.getTimestamp());
-        messagingTemplate.convertAndSendToUser(
-                user.getEmail(),
-                "/queue/notifications",
-                notificationDTO
-        );
+    private void enqueue(String message, String type, String detail, NotificationChannel channel, UserEntity recipient) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime deliverAfter = deliveryPolicies.policyFor(type) == NotificationDelivery.IMMEDIATE
+                ? now : now.plus(deliveryPolicies.windowMillis(), ChronoUnit.MILLIS);
+        notificationOutboxRepo.save(new NotificationOutboxEntity(message, type, detail, channel, recipient, now, deliverAfter));
     }
 
 
@@ -75,22 +102,136 @@ public class NotificationService {
         return notificationRepository.findByUserId(userId);
     }
 
+    // Keyset-paginated, newest first: one bounded range scan of idx_notification_user_timestamp per page
+    public NotificationPage getNotificationPageForUser(Long userId, String cursor, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1); // one extra row tells us if there is a next page
+
+        List<NotificationEntity> notifications;
+        if (cursor == null || cursor.isBlank()) {
+            notifications = notificationRepository.findPageForUser(userId, pageRequest);
+        } else {
+            NotificationCursor after = NotificationCursor.decode(cursor);
+            notifications = notificationRepository.findPageForUserAfter(userId, after.getTimestamp(), after.getId(), pageRequest);
+        }
+
+        if (notifications.size() <= pageSize) {
+            return new NotificationPage(notifications, null);
+        }
+
+        List<NotificationEntity> page = notifications.subList(0, pageSize);
+        NotificationEntity last = page.get(pageSize - 1);
+        return new NotificationPage(page, new NotificationCursor(last.getTimestamp(), last.getId()).encode());
+    }
+
+    // Direct and broadcast notifications the user has not read yet, newest first
+    public List<UserNotification> getUnreadNotifications(Long userId, Integer limit) {
+        int size = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<UserNotification> unread = new ArrayList<>(2 * size);
+        for (NotificationEntity notification : notificationRepository.findUnreadForUser(userId, PageRequest.of(0, size))) {
+            unread.add(unread(notification));
+        }
+        for (NotificationEntity notification : notificationRepository.findAllById(broadcastReadState.unreadIds(userId, size))) {
+            unread.add(unread(notification));
+        }
+        unread.sort(NEWEST_FIRST);
+        return unread.size() > size ? unread.subList(0, size) : unread;
+    }
+
+    // What a reconnecting client missed since lastSeenId, from the replay buffer when it still covers the gap
+    public List<NotificationDTO> replaySince(Long userId, String email, long lastSeenId) {
+        return replayBuffer.replayAll(userId, email, lastSeenId);
+    }
+
+    // The badge: direct notifications from a per-user cache, broadcasts from the in-memory read-state bitmap
+    public long getUnreadCount(Long userId) {
+        return directUnreadCount(userId) + broadcastReadState.unreadCount(userId);
+    }
+
+    // Served from memory; a count query only after the user's notifications changed or the entry aged out
+    // (another instance may have delivered or marked notifications meanwhile)
+    private long directUnreadCount(Long userId) {
+        long now = System.currentTimeMillis();
+        UnreadCount cached = unreadCounts.get(userId);
+        if (cached != null && now - cached.loadedAt() < unreadCountTtlMillis) {
+            return cached.count();
+        }
+        // Loaded outside the map so the query does not run inside a ConcurrentHashMap bin lock
+        int stripe = unreadStripe(userId);
+        long version = unreadVersions.get(stripe);
+        UnreadCount loaded = new UnreadCount(notificationRepository.countByUserIdAndReadFalse(userId), now);
+        if (unreadVersions.get(stripe) == version) {
+            boolean installed = cached == null
+                    ? unreadCounts.putIfAbsent(userId, loaded) == null
+                    : unreadCounts.replace(userId, cached, loaded);
+            if (installed && unreadVersions.get(stripe) != version) {
+                unreadCounts.remove(userId, loaded); // changed between the check and the put
+            }
+        }
+        return loaded.count();
+    }
+
+    // Called once a change to the user's notifications has committed
+    void unreadChanged(Long userId) {
+        if (userId != null) {
+            unreadVersions.incrementAndGet(unreadStripe(userId));
+            unreadCounts.remove(userId);
+        }
+    }
+
+    private static int unreadStripe(Long userId) {
+        return Long.hashCode(userId) & (UNREAD_VERSION_STRIPES - 1);
+    }
+
     public void clearAllNotifications() {
         notificationRepository.deleteAll();
+        for (int stripe = 0; stripe < UNREAD_VERSION_STRIPES; stripe++) {
+            unreadVersions.incrementAndGet(stripe);
+        }
+        unreadCounts.clear();
+        broadcastReadState.allBroadcastsRemoved();
     }
 
     public void clearNotificationById(Long id) {
+        Long userId = notificationRepository.findUserIdById(id);
         notificationRepository.deleteById(id);
+        if (userId == null) {
+            broadcastReadState.broadcastRemoved(id);
+        } else {
+            unreadChanged(userId);
+        }
     }
 
+    @Transactional
+    public int markAllAsRead(Long userId) {
+        int updated = notificationRepository.markAllReadForUser(userId);
+        broadcastReadState.markAllRead(userId);
+        TransactionCallbacks.afterCommit(() -> unreadChanged(userId));
+        return updated;
+    }
 
-    public void markAllAsRead() {
-        List<NotificationEntity> notifications = notificationRepository.findAll();
-        for (NotificationEntity notification : notifications) {
-            notification.setRead(true); // You need to add this field if it doesn't exist
+    // Direct notifications flip their own flag; a broadcast only sets this user's bit
+    @Transactional
+    public void markAsRead(Long userId, Long notificationId) {
+        NotificationEntity notification = notificationRepository.findById(notificationId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Notification not found"));
+        if (notification.getUser() == null) {
+            broadcastReadState.markRead(userId, notificationId);
+            return;
+        }
+        if (!notification.getUser().getId().equals(userId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Notification not found");
+        }
+        if (!notification.isRead()) {
+            notification.setRead(true);
+            TransactionCallbacks.afterCommit(() -> unreadChanged(userId));
         }
-        notificationRepository.saveAll(notifications);
     }
 
+    private static UserNotification unread(NotificationEntity notification) {
+        return new UserNotification(notification.getId(), notification.getMessage(), notification.getType(),
+                notification.getTimestamp(), false, notification.getUser() == null);
+    }
 
+    private record UnreadCount(long count, long loadedAt) {}
 }
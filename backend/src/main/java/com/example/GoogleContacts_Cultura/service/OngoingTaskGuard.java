@@ -0,0 +1,124 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import com.example.GoogleContacts_Cultura.entity.TaskEntity;
+import com.example.GoogleContacts_Cultura.entity.UserEntity;
+import com.example.GoogleContacts_Cultura.model.TaskStatus;
+import com.example.GoogleContacts_Cultura.repository.TaskRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Answers "is this user already in the middle of a task?" (as poster or acceptor, In Progress or
+// Pending Verification) with one LIMIT 1 query, optionally remembering the answer per user for ttl-ms.
+// TaskService reports every status transition here so the cached answers stay correct on this instance.
+// Transitions on other instances are only picked up when the entry expires, so the cache is off by default.
+@Service
+public class OngoingTaskGuard {
+
+    static final List<TaskStatus> ONGOING_STATUSES = List.of(TaskStatus.IN_PROGRESS, TaskStatus.PENDING_VERIFICATION);
+
+    private static final int VERSION_STRIPES = 64;
+
+    private final TaskRepo taskRepo;
+    private final TransactionTemplate freshRead;
+    private final boolean cacheEnabled;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<Long, Cached> ongoingByUser = new ConcurrentHashMap<>();
+    // Bumped by every transition for users in the stripe; a load that saw a bump does not cache its answer
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+
+    public OngoingTaskGuard(TaskRepo taskRepo,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${collaboraid.tasks.ongoing-cache.enabled:false}") boolean cacheEnabled,
+                            @Value("${collaboraid.tasks.ongoing-cache.ttl-ms:30000}") long ttlMillis) {
+        this.taskRepo = taskRepo;
+        this.freshRead = new TransactionTemplate(transactionManager);
+        this.freshRead.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.freshRead.setReadOnly(true);
+        this.cacheEnabled = cacheEnabled;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+    }
+
+    public boolean hasOngoingTask(Long userId) {
+        if (!cacheEnabled) {
+            return queryOngoing(userId);
+        }
+        long now = System.nanoTime();
+        Cached cached = ongoingByUser.get(userId);
+        if (cached != null && now - cached.expiresAt() < 0) {
+            return cached.ongoing();
+        }
+        // Loaded outside the map so the query does not run inside a ConcurrentHashMap bin lock, and in a
+        // transaction of its own: the caller's snapshot may predate a transition that has since been evicted
+        int stripe = stripe(userId);
+        long version = versions.get(stripe);
+        boolean ongoing = Boolean.TRUE.equals(freshRead.execute(status -> queryOngoing(userId)));
+        Cached loaded = new Cached(ongoing, now + ttlNanos);
+        if (versions.get(stripe) == version) {
+            boolean installed = cached == null
+                    ? ongoingByUser.putIfAbsent(userId, loaded) == null
+                    : ongoingByUser.replace(userId, cached, loaded);
+            if (installed && versions.get(stripe) != version) {
+                ongoingByUser.remove(userId, loaded); // a transition slipped in between the check and the put
+            }
+        }
+        return ongoing;
+    }
+
+    // The task just moved into In Progress: both parties are now busy
+    public void onAccepted(TaskEntity task) {
+        TransactionCallbacks.afterCommit(() -> {
+            markOngoing(task.getUser());
+            markOngoing(task.getAcceptedBy());
+        });
+    }
+
+    // The task left (or may have left) an ongoing status: drop the cached answers and reload lazily,
+    // since either party could still be busy with another task
+    public void onReleased(TaskEntity task) {
+        TransactionCallbacks.afterCommit(() -> {
+            evict(task.getUser());
+            evict(task.getAcceptedBy());
+        });
+    }
+
+    // Expired answers are never served, this only keeps users who went quiet from piling up
+    @Scheduled(fixedDelayString = "${collaboraid.tasks.ongoing-cache.ttl-ms:30000}")
+    public void expire() {
+        long now = System.nanoTime();
+        ongoingByUser.values().removeIf(cached -> now - cached.expiresAt() >= 0);
+    }
+
+    private boolean queryOngoing(Long userId) {
+        return !taskRepo.findOngoingTaskIds(userId, ONGOING_STATUSES, PageRequest.of(0, 1)).isEmpty();
+    }
+
+    private void markOngoing(UserEntity user) {
+        if (cacheEnabled && user != null) {
+            versions.incrementAndGet(stripe(user.getId()));
+            ongoingByUser.put(user.getId(), new Cached(true, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    private void evict(UserEntity user) {
+        if (cacheEnabled && user != null) {
+            versions.incrementAndGet(stripe(user.getId()));
+            ongoingByUser.remove(user.getId());
+        }
+    }
+
+    private static int stripe(Long userId) {
+        return Long.hashCode(userId) & (VERSION_STRIPES - 1);
+    }
+
+    private record Cached(boolean ongoing, long expiresAt) {}
+}
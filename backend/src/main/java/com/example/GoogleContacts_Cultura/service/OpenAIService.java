@@ -4,12 +4,12 @@ import com.example.GoogleContacts_Cultura.entity.AIMessageEntity;
 import com.example.GoogleContacts_Cultura.entity.UserEntity;
 import com.example.GoogleContacts_Cultura.repository.AIMessageRepo;
 import com.example.GoogleContacts_Cultura.repository.UserRepo;
+import com.example.GoogleContacts_Cultura.websocket.MessageBus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
@@ -29,14 +29,14 @@ public class OpenAIService {
     private final WebClient webClient;
     private final AIMessageRepo aiMessageRepository;
     private final UserRepo userRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final MessageBus messageBus;
     private final String openaiApiKey;
 
     public OpenAIService(
             WebClient.Builder webClientBuilder,
             AIMessageRepo aiMessageRepository,
             UserRepo userRepository,
-            SimpMessagingTemplate messagingTemplate,
+            MessageBus messageBus,
             @Value("${openai.api.key}") String openaiApiKey
     ) {
         this.webClient = webClientBuilder
@@ -47,7 +47,7 @@ public class OpenAIService {
                 .build();
         this.aiMessageRepository = aiMessageRepository;
         this.userRepository = userRepository;
-        this.messagingTemplate = messagingTemplate;
+        this.messageBus = messageBus;
         this.openaiApiKey = openaiApiKey;
     }
     public Mono<String> getAIResponse(String userMessage, String username) {
@@ -143,7 +143,7 @@ public class OpenAIService {
                     // Handle AI failure cases
                     if (aiResponse.equalsIgnoreCase("No response from AI.")) {
                         String failureMessage = "AI failed to process the message from user " + username + ".";
-                        messagingTemplate.convertAndSend("/topic/staff-alerts", failureMessage);
+                        messageBus.convertAndSend("/topic/staff-alerts", failureMessage);
                         return Mono.just("AI failed. Support staff notified.");
                     }
 
@@ -0,0 +1,240 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import com.example.GoogleContacts_Cultura.DTO.TaskCursor;
+import com.example.GoogleContacts_Cultura.DTO.TaskDeltaEvent;
+import com.example.GoogleContacts_Cultura.DTO.TaskPage;
+import com.example.GoogleContacts_Cultura.DTO.TaskSummary;
+import com.example.GoogleContacts_Cultura.model.Category;
+import com.example.GoogleContacts_Cultura.model.TaskEventType;
+import com.example.GoogleContacts_Cultura.model.TaskStatus;
+import com.example.GoogleContacts_Cultura.repository.TaskRepo;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+// Immutable, pre-sorted copy of the open-task feed. Writers (task deltas) build a patched copy and swap it in;
+// readers just dereference the AtomicReference, so /api/task/open never touches the database or takes a lock.
+// Each snapshot also memoizes the serialized JSON of the pages it has served; a new version starts with an empty cache.
+@Service
+public class OpenTaskSnapshot {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenTaskSnapshot.class);
+
+    private static final int MAX_CACHED_PAGES = 256;
+
+    // Feed order: newest first, ties broken by id, identical to the keyset queries in TaskRepo
+    static final Comparator<TaskSummary> FEED_ORDER = Comparator
+            .comparing(TaskSummary::getTimestamp, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(TaskSummary::getId, Comparator.reverseOrder());
+
+    private final TaskRepo taskRepo;
+    private final TaskEventPublisher taskEventPublisher;
+    private final ObjectMapper objectMapper;
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    private final Object writeLock = new Object();
+
+    public OpenTaskSnapshot(TaskRepo taskRepo, TaskEventPublisher taskEventPublisher, ObjectMapper objectMapper) {
+        this.taskRepo = taskRepo;
+        this.taskEventPublisher = taskEventPublisher;
+        this.objectMapper = objectMapper;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        // Read before taking the write lock: the publisher holds its own lock while calling onTaskDelta.
+        // Anything published in between is already in the query result, so the version is a safe lower bound.
+        long version = taskEventPublisher.currentVersion();
+        synchronized (writeLock) {
+            List<TaskSummary> open = new ArrayList<>(taskRepo.findSummariesByStatus(TaskStatus.OPEN));
+            open.sort(FEED_ORDER);
+            current.set(Snapshot.of(version, open));
+            logger.info("Open task snapshot built with {} tasks at version {}", open.size(), version);
+        }
+    }
+
+    @EventListener
+    public void onTaskDelta(TaskDeltaEvent event) {
+        synchronized (writeLock) {
+            Snapshot snapshot = current.get();
+            if (snapshot == null) {
+                return; // not built yet; the initial load will read this change from the database
+            }
+            TaskSummary task = event.getTask();
+            boolean open = task.getStatus() == TaskStatus.OPEN && event.getType() != TaskEventType.DELETED;
+            current.set(snapshot.patch(event.getVersion(), task, open));
+        }
+    }
+
+    public long version() {
+        return snapshot().version;
+    }
+
+    // The current open tasks in feed order; the list is immutable and safe to iterate without locking
+    public List<TaskSummary> openTasks() {
+        return snapshot().view(null);
+    }
+
+    // Whole open feed (legacy /api/task/open), optionally for one category
+    public byte[] listJson(Category category) {
+        Snapshot snapshot = snapshot();
+        return snapshot.cachedJson(new PageKey(category, null, -1), () -> serialize(snapshot.view(category)));
+    }
+
+    // One keyset page in the same shape as TaskService.findTaskPageByStatus
+    public byte[] pageJson(Category category, String cursor, int pageSize) {
+        Snapshot snapshot = snapshot();
+        return snapshot.cachedJson(new PageKey(category, cursor, pageSize), () -> {
+            List<TaskSummary> view = snapshot.view(category);
+            int from = 0;
+            if (cursor != null && !cursor.isBlank()) {
+                TaskCursor after = TaskCursor.decode(cursor);
+                from = firstAfter(view, after.getTimestamp(), after.getId());
+            }
+            int to = Math.min(from + pageSize, view.size());
+            List<TaskSummary> page = view.subList(from, to);
+            String nextCursor = null;
+            if (to < view.size() && !page.isEmpty()) {
+                TaskSummary last = page.get(page.size() - 1);
+                nextCursor = new TaskCursor(last.getTimestamp(), last.getId()).encode();
+            }
+            return serialize(new TaskPage<>(page, nextCursor));
+        });
+    }
+
+    private Snapshot snapshot() {
+        Snapshot snapshot = current.get();
+        if (snapshot == null) {
+            rebuild(); // a request raced application startup
+            snapshot = current.get();
+        }
+        return snapshot;
+    }
+
+    // Binary search for the first task strictly after the cursor in feed order
+    private static int firstAfter(List<TaskSummary> view, LocalDateTime timestamp, Long id) {
+        TaskSummary probe = new TaskSummary(id, null, null, null, null, timestamp, null, null, null, null, null);
+        int low = 0;
+        int high = view.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (FEED_ORDER.compare(view.get(mid), probe) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private record PageKey(Category category, String cursor, int pageSize) {}
+
+    private static final class Snapshot {
+        private final long version;
+        private final List<TaskSummary> all;
+        private final Map<Category, List<TaskSummary>> byCategory;
+        private final ConcurrentHashMap<PageKey, byte[]> serializedPages = new ConcurrentHashMap<>();
+
+        private Snapshot(long version, List<TaskSummary> all, Map<Category, List<TaskSummary>> byCategory) {
+            this.version = version;
+            this.all = all;
+            this.byCategory = byCategory;
+        }
+
+        static Snapshot of(long version, List<TaskSummary> sorted) {
+            Map<Category, List<TaskSummary>> byCategory = new EnumMap<>(Category.class);
+            for (TaskSummary task : sorted) {
+                if (task.getCategory() != null) {
+                    byCategory.computeIfAbsent(task.getCategory(), c -> new ArrayList<>()).add(task);
+                }
+            }
+            byCategory.replaceAll((category, tasks) -> Collections.unmodifiableList(tasks));
+            return new Snapshot(version, Collections.unmodifiableList(sorted), byCategory);
+        }
+
+        // Copy-on-write: only the full list and the affected category lists are rebuilt
+        Snapshot patch(long newVersion, TaskSummary task, boolean open) {
+            Category previousCategory = null;
+            List<TaskSummary> nextAll = new ArrayList<>(all.size() + 1);
+            for (TaskSummary existing : all) {
+                if (Objects.equals(existing.getId(), task.getId())) {
+                    previousCategory = existing.getCategory();
+                } else {
+                    nextAll.add(existing);
+                }
+            }
+            if (open) {
+                insertSorted(nextAll, task);
+            }
+
+            Map<Category, List<TaskSummary>> nextByCategory = new EnumMap<>(byCategory);
+            for (Category category : new Category[]{previousCategory, task.getCategory()}) {
+                if (category == null) {
+                    continue;
+                }
+                List<TaskSummary> categoryTasks = new ArrayList<>();
+                for (TaskSummary existing : nextAll) {
+                    if (existing.getCategory() == category) {
+                        categoryTasks.add(existing);
+                    }
+                }
+                if (categoryTasks.isEmpty()) {
+                    nextByCategory.remove(category);
+                } else {
+                    nextByCategory.put(category, Collections.unmodifiableList(categoryTasks));
+                }
+            }
+            return new Snapshot(Math.max(version, newVersion), Collections.unmodifiableList(nextAll), nextByCategory);
+        }
+
+        List<TaskSummary> view(Category category) {
+            if (category == null) {
+                return all;
+            }
+            return byCategory.getOrDefault(category, List.of());
+        }
+
+        byte[] cachedJson(PageKey key, Supplier<byte[]> serializer) {
+            byte[] cached = serializedPages.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            byte[] json = serializer.get();
+            if (serializedPages.size() < MAX_CACHED_PAGES) {
+                serializedPages.putIfAbsent(key, json);
+            }
+            return json;
+        }
+
+        private static void insertSorted(List<TaskSummary> tasks, TaskSummary task) {
+            int index = Collections.binarySearch(tasks, task, FEED_ORDER);
+            tasks.add(index < 0 ? -index - 1 : index, task);
+        }
+    }
+
+    private byte[] serialize(Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize open task feed", e);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import com.example.GoogleContacts_Cultura.DTO.PresenceUpdate;
+import com.example.GoogleContacts_Cultura.DTO.TypingUpdate;
+import com.example.GoogleContacts_Cultura.JWT.JwtUtil;
+import com.example.GoogleContacts_Cultura.entity.UserEntity;
+import com.example.GoogleContacts_Cultura.websocket.MessageBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Who is online, from STOMP connect/disconnect events plus every inbound frame (heartbeats included, see
+// PresenceHeartbeatInterceptor). Everything lives in concurrent maps; a periodic sweep expires sessions that
+// stopped sending within the TTL. Changes go to /topic/presence/{userId}, so only clients looking at that user
+// receive them and a transition costs one send, never a broadcast to everyone. Going offline waits out a short
+// grace period so a mobile reconnect does not flap the indicator.
+// Typing events are coalesced per (sender, receiver) and flushed at most once per interval.
+@Service
+public class PresenceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PresenceService.class);
+
+    public static final String PRESENCE_TOPIC = "/topic/presence/";
+    public static final String TYPING_TOPIC = "/topic/typing/";
+
+    private final MessageBus messageBus;
+    private final JwtUtil jwtUtil;
+    private final UserService userService;
+    private final long ttlMillis;
+    private final long offlineGraceMillis;
+    private final long typingExpiryMillis;
+
+    private final Map<String, SessionState> sessions = new ConcurrentHashMap<>();
+    private final Map<Long, UserPresence> users = new ConcurrentHashMap<>();
+    private final Map<TypingKey, TypingState> typing = new ConcurrentHashMap<>();
+
+    public PresenceService(MessageBus messageBus,
+                           JwtUtil jwtUtil,
+                           UserService userService,
+                           @Value("${collaboraid.presence.ttl-ms:60000}") long ttlMillis,
+                           @Value("${collaboraid.presence.offline-grace-ms:5000}") long offlineGraceMillis,
+                           @Value("${collaboraid.presence.typing-expiry-ms:6000}") long typingExpiryMillis) {
+        this.messageBus = messageBus;
+        this.jwtUtil = jwtUtil;
+        this.userService = userService;
+        this.ttlMillis = ttlMillis;
+        this.offlineGraceMillis = offlineGraceMillis;
+        this.typingExpiryMillis = typingExpiryMillis;
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        Long userId = resolveUserId(event.getMessage(), event.getUser());
+        if (sessionId == null || userId == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        sessions.put(sessionId, new SessionState(userId, now));
+        UserPresence presence = users.computeIfAbsent(userId, id -> new UserPresence());
+        boolean cameOnline;
+        synchronized (presence) {
+            presence.sessionIds.add(sessionId);
+            presence.lastSeen = now;
+            presence.offlineSince = 0;
+            cameOnline = !presence.publishedOnline;
+            presence.publishedOnline = true;
+        }
+        if (cameOnline) {
+            publish(userId, presence);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        endSession(event.getSessionId(), System.currentTimeMillis());
+    }
+
+    // Called for every inbound STOMP frame: two map lookups and two volatile writes
+    public void touch(String sessionId) {
+        SessionState session = sessionId == null ? null : sessions.get(sessionId);
+        if (session == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        session.lastSeen = now;
+        UserPresence presence = users.get(session.userId);
+        if (presence != null) {
+            presence.lastSeen = now;
+        }
+    }
+
+    // User id behind a STOMP session, or null before CONNECT completed
+    public Long userForSession(String sessionId) {
+        SessionState session = sessionId == null ? null : sessions.get(sessionId);
+        return session == null ? null : session.userId;
+    }
+
+    public List<PresenceUpdate> getPresence(Collection<Long> userIds) {
+        List<PresenceUpdate> result = new ArrayList<>(userIds.size());
+        for (Long userId : userIds) {
+            UserPresence presence = users.get(userId);
+            result.add(presence == null ? new PresenceUpdate(userId, false, null) : presence.toUpdate(userId));
+        }
+        return result;
+    }
+
+    // Latest state wins; the flush sends it once per interval
+    public void typing(String sessionId, TypingUpdate update) {
+        SessionState session = sessionId == null ? null : sessions.get(sessionId);
+        if (session == null || update.getReceiverId() == null || update.getReceiverId().equals(session.userId)) {
+            return;
+        }
+        TypingState state = typing.computeIfAbsent(new TypingKey(session.userId, update.getReceiverId()), key -> new TypingState());
+        synchronized (state) {
+            state.typing = update.isTyping();
+            state.updatedAt = System.currentTimeMillis();
+        }
+    }
+
+    @Scheduled(fixedRateString = "${collaboraid.presence.typing-interval-ms:1000}")
+    public void flushTyping() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<TypingKey, TypingState> entry : typing.entrySet()) {
+            TypingState state = entry.getValue();
+            Boolean send = null;
+            synchronized (state) {
+                if (state.typing && now - state.updatedAt > typingExpiryMillis) {
+                    state.typing = false; // client went quiet without sending typing=false
+                }
+                if (state.typing != state.published) {
+                    state.published = state.typing;
+                    send = state.typing;
+                } else if (!state.typing) {
+                    typing.remove(entry.getKey(), state);
+                }
+            }
+            if (send != null) {
+                TypingKey key = entry.getKey();
+                messageBus.convertAndSend(TYPING_TOPIC + key.receiverId(), new TypingUpdate(key.senderId(), key.receiverId(), send));
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${collaboraid.presence.sweep-interval-ms:5000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        sessions.forEach((sessionId, session) -> {
+            if (now - session.lastSeen > ttlMillis) {
+                logger.debug("Expiring silent STOMP session {} of user {}", sessionId, session.userId);
+                endSession(sessionId, now);
+            }
+        });
+        users.forEach((userId, presence) -> {
+            boolean wentOffline = false;
+            synchronized (presence) {
+                if (presence.publishedOnline && presence.sessionIds.isEmpty()
+                        && now - presence.offlineSince >= offlineGraceMillis) {
+                    presence.publishedOnline = false;
+                    wentOffline = true;
+                }
+            }
+            if (wentOffline) {
+                publish(userId, presence);
+            }
+        });
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private void endSession(String sessionId, long now) {
+        SessionState session = sessionId == null ? null : sessions.remove(sessionId);
+        if (session == null) {
+            return;
+        }
+        UserPresence presence = users.get(session.userId);
+        if (presence == null) {
+            return;
+        }
+        synchronized (presence) {
+            if (presence.sessionIds.remove(sessionId) && presence.sessionIds.isEmpty()) {
+                presence.offlineSince = now; // published by the sweep once the grace period has passed
+            }
+        }
+    }
+
+    private void publish(Long userId, UserPresence presence) {
+        messageBus.convertAndSend(PRESENCE_TOPIC + userId, presence.toUpdate(userId));
+    }
+
+    // The JWT on the STOMP CONNECT frame carries the user id; fall back to the session principal (email)
+    private Long resolveUserId(Message<?> connected, Principal principal) {
+        Object connect = SimpMessageHeaderAccessor.wrap(connected).getHeader(SimpMessageHeaderAccessor.CONNECT_MESSAGE_HEADER);
+        if (connect instanceof Message<?> connectMessage) {
+            String authHeader = SimpMessageHeaderAccessor.wrap(connectMessage).getFirstNativeHeader("Authorization");
+            if (authHeader != null && authHeader.startsWith("Bearer ")) {
+                try {
+                    return jwtUtil.extractClaim(authHeader.substring(7), claims -> claims.get("id", Long.class));
+                } catch (RuntimeException e) {
+                    logger.debug("Ignoring invalid token on STOMP CONNECT: {}", e.getMessage());
+                }
+            }
+        }
+        if (principal != null) {
+            return userService.findByEmail(principal.getName()).map(UserEntity::getId).orElse(null);
+        }
+        return null;
+    }
+
+    private static final class SessionState {
+        private final Long userId;
+        private volatile long lastSeen;
+
+        private SessionState(Long userId, long lastSeen) {
+            this.userId = userId;
+            this.lastSeen = lastSeen;
+        }
+    }
+
+    private static final class UserPresence {
+        private final Set<String> sessionIds = ConcurrentHashMap.newKeySet();
+        private volatile long lastSeen;
+        private long offlineSince;                // guarded by this
+        private volatile boolean publishedOnline; // written under this; what subscribers were last told
+
+        private PresenceUpdate toUpdate(Long userId) {
+            LocalDateTime seen = lastSeen == 0 ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(lastSeen), ZoneId.systemDefault());
+            // Still online during the offline grace period, matching what subscribers were told
+            return new PresenceUpdate(userId, publishedOnline || !sessionIds.isEmpty(), seen);
+        }
+    }
+
+    private record TypingKey(Long senderId, Long receiverId) {}
+
+    private static final class TypingState {
+        private boolean typing;    // guarded by this
+        private boolean published; // guarded by this
+        private long updatedAt;    // guarded by this
+    }
+}
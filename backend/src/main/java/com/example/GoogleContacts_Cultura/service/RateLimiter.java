@@ -0,0 +1,146 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import com.example.GoogleContacts_Cultura.model.RateLimitPolicy;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-user token buckets for every RateLimitPolicy, stored in the GCRA form: one long per key, the time at which
+// the bucket would be full again ("theoretical arrival time"). A check is a hash probe into primitive arrays
+// under one of 64 stripe locks, with no allocation. A bucket that has refilled completely is indistinguishable
+// from a missing one, so its slot is simply reused; nothing needs a separate expiry pass.
+@Service
+public class RateLimiter {
+
+    private static final int STRIPES = 64; // power of two; picked by the top bits of the key hash
+    private static final int INITIAL_STRIPE_CAPACITY = 64;
+    private static final long EMPTY = 0;
+
+    private final Limit[] limits = new Limit[RateLimitPolicy.values().length];
+
+    public RateLimiter(Environment environment) {
+        for (RateLimitPolicy policy : RateLimitPolicy.values()) {
+            String prefix = "collaboraid.rate-limit." + policy.getKey() + ".";
+            int requests = environment.getProperty(prefix + "requests", Integer.class, policy.getRequests());
+            int periodSeconds = environment.getProperty(prefix + "period-seconds", Integer.class, policy.getPeriodSeconds());
+            int burst = environment.getProperty(prefix + "burst", Integer.class, policy.getBurst());
+            limits[policy.ordinal()] = new Limit(requests, periodSeconds, burst);
+        }
+    }
+
+    // 0 if the request may proceed, otherwise the nanoseconds until it would be allowed
+    public long tryAcquire(RateLimitPolicy policy, long key) {
+        return tryAcquire(policy, key, System.nanoTime());
+    }
+
+    long tryAcquire(RateLimitPolicy policy, long key, long now) {
+        return limits[policy.ordinal()].tryAcquire(key == EMPTY ? Long.MIN_VALUE : key, now);
+    }
+
+    // Whole seconds for a Retry-After header, never 0
+    public static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    // Key for callers without a user id (public endpoints, bad tokens); negative, so never equal to a user id
+    public static long anonymousKey(String clientAddress) {
+        return mix(clientAddress == null ? 0 : clientAddress.hashCode()) | Long.MIN_VALUE;
+    }
+
+    // Murmur3 finalizer: sequential user ids spread evenly over stripes and slots
+    private static long mix(long x) {
+        x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+        x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return x ^ (x >>> 33);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private static final class Limit {
+        private final long interval;  // nanoseconds per token
+        private final long tolerance; // how far ahead of now a bucket may run: interval * (burst - 1)
+        private final Stripe[] stripes = new Stripe[STRIPES];
+
+        Limit(int requests, int periodSeconds, int burst) {
+            this.interval = Math.max(1, TimeUnit.SECONDS.toNanos(Math.max(1, periodSeconds)) / Math.max(1, requests));
+            this.tolerance = interval * (Math.max(1, burst) - 1);
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe();
+            }
+        }
+
+        long tryAcquire(long key, long now) {
+            long hash = mix(key);
+            return stripes[(int) (hash >>> 58)].tryAcquire(key, hash, now, interval, tolerance);
+        }
+    }
+
+    // Open-addressing table of key -> theoretical arrival time, linear probing, guarded by its own monitor
+    private static final class Stripe {
+        private long[] keys = new long[INITIAL_STRIPE_CAPACITY];
+        private long[] arrivals = new long[INITIAL_STRIPE_CAPACITY];
+        private int used;
+
+        synchronized long tryAcquire(long key, long hash, long now, long interval, long tolerance) {
+            int mask = keys.length - 1;
+            int index = (int) hash & mask;
+            int reusable = -1;
+            while (keys[index] != key) {
+                if (keys[index] == EMPTY) {
+                    // Not present: take a slot whose bucket has fully refilled, or this empty one
+                    if (reusable < 0) {
+                        reusable = index;
+                        used++;
+                    }
+                    keys[reusable] = key;
+                    arrivals[reusable] = now;
+                    index = reusable;
+                    break;
+                }
+                if (reusable < 0 && arrivals[index] - now <= 0) {
+                    reusable = index;
+                }
+                index = (index + 1) & mask;
+            }
+
+            long arrival = Math.max(arrivals[index], now);
+            long wait = arrival - tolerance - now;
+            if (wait > 0) {
+                return wait;
+            }
+            arrivals[index] = arrival + interval;
+            if (used > keys.length / 2) {
+                rehash(now);
+            }
+            return 0;
+        }
+
+        // Keeps only buckets that are still draining, and sizes the table to a quarter full
+        private void rehash(long now) {
+            int live = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY && arrivals[i] - now > 0) {
+                    live++;
+                }
+            }
+            int capacity = Math.max(INITIAL_STRIPE_CAPACITY, Integer.highestOneBit(Math.max(1, live) * 4 - 1) << 1);
+            long[] oldKeys = keys;
+            long[] oldArrivals = arrivals;
+            keys = new long[capacity];
+            arrivals = new long[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY && oldArrivals[i] - now > 0) {
+                    int index = (int) mix(oldKeys[i]) & mask;
+                    while (keys[index] != EMPTY) {
+                        index = (index + 1) & mask;
+                    }
+                    keys[index] = oldKeys[i];
+                    arrivals[index] = oldArrivals[i];
+                }
+            }
+            used = live;
+        }
+    }
+}
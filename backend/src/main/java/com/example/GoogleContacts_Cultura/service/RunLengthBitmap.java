@@ -0,0 +1,159 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+// Set of non-negative longs kept as sorted, disjoint, non-adjacent inclusive runs [start, end]. Costs one run per
+// gap, whatever the number of ids: BroadcastReadState marks the non-broadcast ids around each broadcast it adds,
+// so read state stays "everything up to n" plus a run per unread stretch. Serialized as varint deltas.
+// Not thread-safe.
+final class RunLengthBitmap {
+
+    private long[] runs = new long[8]; // start0, end0, start1, end1, ...
+    private int runCount;
+
+    boolean contains(long value) {
+        int run = lastRunStartingAtOrBefore(value);
+        return run >= 0 && end(run) >= value;
+    }
+
+    boolean add(long value) {
+        return addRange(value, value);
+    }
+
+    // True if anything was added
+    boolean addRange(long from, long to) {
+        if (from > to) {
+            return false;
+        }
+        int first = firstRunEndingAtOrAfter(from - 1); // first run overlapping or touching [from, to]
+        int last = lastRunStartingAtOrBefore(to + 1);
+        if (first > last) {
+            insertRun(first, from, to);
+            return true;
+        }
+        long start = Math.min(from, start(first));
+        long end = Math.max(to, end(last));
+        if (first == last && start == start(first) && end == end(first)) {
+            return false;
+        }
+        runs[2 * first] = start;
+        runs[2 * first + 1] = end;
+        int removed = last - first;
+        if (removed > 0) {
+            System.arraycopy(runs, 2 * (last + 1), runs, 2 * (first + 1), 2 * (runCount - last - 1));
+            runCount -= removed;
+        }
+        return true;
+    }
+
+    void or(RunLengthBitmap other) {
+        for (int i = 0; i < other.runCount; i++) {
+            addRange(other.start(i), other.end(i));
+        }
+    }
+
+    int runCount() {
+        return runCount;
+    }
+
+    long start(int run) {
+        return runs[2 * run];
+    }
+
+    long end(int run) {
+        return runs[2 * run + 1];
+    }
+
+    // Index of the last run with start <= value, or -1
+    int lastRunStartingAtOrBefore(long value) {
+        int low = 0;
+        int high = runCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (start(mid) <= value) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    // Index of the first run with end >= value, or runCount
+    int firstRunEndingAtOrAfter(long value) {
+        int low = 0;
+        int high = runCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (end(mid) >= value) {
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2 + runCount * 4);
+        writeVarLong(out, runCount);
+        long previousEnd = -1;
+        for (int i = 0; i < runCount; i++) {
+            writeVarLong(out, start(i) - previousEnd - 1); // runs never touch, so the gap is at least 1
+            writeVarLong(out, end(i) - start(i));
+            previousEnd = end(i);
+        }
+        return out.toByteArray();
+    }
+
+    static RunLengthBitmap fromBytes(byte[] bytes) {
+        RunLengthBitmap bitmap = new RunLengthBitmap();
+        int[] position = {0};
+        long count = readVarLong(bytes, position);
+        long previousEnd = -1;
+        for (long i = 0; i < count; i++) {
+            long start = previousEnd + 1 + readVarLong(bytes, position);
+            long end = start + readVarLong(bytes, position);
+            bitmap.insertRun(bitmap.runCount, start, end);
+            previousEnd = end;
+        }
+        return bitmap;
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private void insertRun(int index, long start, long end) {
+        if (2 * (runCount + 1) > runs.length) {
+            runs = Arrays.copyOf(runs, runs.length * 2);
+        }
+        System.arraycopy(runs, 2 * index, runs, 2 * (index + 1), 2 * (runCount - index));
+        runs[2 * index] = start;
+        runs[2 * index + 1] = end;
+        runCount++;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            if (position[0] >= bytes.length || shift > 63) {
+                throw new IllegalArgumentException("Corrupt read-state bitmap");
+            }
+            byte b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+}
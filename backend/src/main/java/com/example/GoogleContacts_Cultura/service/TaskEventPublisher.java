@@ -0,0 +1,87 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import com.example.GoogleContacts_Cultura.DTO.TaskDeltaEvent;
+import com.example.GoogleContacts_Cultura.DTO.TaskEventReplay;
+import com.example.GoogleContacts_Cultura.DTO.TaskSummary;
+import com.example.GoogleContacts_Cultura.model.Category;
+import com.example.GoogleContacts_Cultura.model.TaskEventType;
+import com.example.GoogleContacts_Cultura.model.TaskStatus;
+import com.example.GoogleContacts_Cultura.websocket.MessageBus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+// Publishes structured task feed deltas so clients can patch their lists instead of re-fetching /api/task/open.
+// Every event gets the next feed version; the most recent ones are kept so a reconnecting client can resume.
+@Service
+public class TaskEventPublisher {
+
+    public static final String TASKS_TOPIC = "/topic/tasks";
+
+    private final MessageBus messageBus;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final int replayCapacity;
+
+    private final ArrayDeque<TaskDeltaEvent> recentEvents = new ArrayDeque<>();
+    // Seeded from the clock so versions keep increasing across restarts; older versions simply fall outside the buffer
+    private long version = System.currentTimeMillis();
+
+    public TaskEventPublisher(MessageBus messageBus,
+                              ApplicationEventPublisher applicationEventPublisher,
+                              @Value("${collaboraid.tasks.events.replay-capacity:1024}") int replayCapacity) {
+        this.messageBus = messageBus;
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.replayCapacity = replayCapacity;
+    }
+
+    // Publishes once the surrounding transaction (if any) commits
+    public void publish(TaskEventType type, TaskStatus previousStatus, TaskSummary task) {
+        TransactionCallbacks.afterCommit(() -> send(type, previousStatus, task));
+    }
+
+    // Events newer than sinceVersion, optionally only for one category
+    public synchronized TaskEventReplay replaySince(long sinceVersion, Category category) {
+        TaskDeltaEvent oldest = recentEvents.peekFirst();
+        boolean fromAnotherRun = sinceVersion > version;
+        boolean noLongerBuffered = sinceVersion < version && (oldest == null || sinceVersion < oldest.getVersion() - 1);
+        if (fromAnotherRun || noLongerBuffered) {
+            return new TaskEventReplay(version, true, List.of());
+        }
+
+        List<TaskDeltaEvent> missed = new ArrayList<>();
+        for (TaskDeltaEvent event : recentEvents) {
+            if (event.getVersion() > sinceVersion
+                    && (category == null || category == event.getTask().getCategory())) {
+                missed.add(event);
+            }
+        }
+        return new TaskEventReplay(version, false, missed);
+    }
+
+    public synchronized long currentVersion() {
+        return version;
+    }
+
+    // Synchronized so that version order, buffer order and send order are the same for every subscriber
+    private synchronized void send(TaskEventType type, TaskStatus previousStatus, TaskSummary task) {
+        TaskDeltaEvent event = new TaskDeltaEvent(type, ++version, task.getId(), previousStatus, task, LocalDateTime.now());
+
+        recentEvents.addLast(event);
+        if (recentEvents.size() > replayCapacity) {
+            recentEvents.removeFirst();
+        }
+
+        messageBus.convertAndSend(TASKS_TOPIC, event);
+        if (task.getCategory() != null) {
+            messageBus.convertAndSend(TASKS_TOPIC + "/" + task.getCategory().name(), event);
+        }
+
+        // In-process listeners (caches, counters) see exactly what clients see, in the same order
+        applicationEventPublisher.publishEvent(event);
+    }
+}
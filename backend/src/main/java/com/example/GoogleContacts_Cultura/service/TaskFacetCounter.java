@@ -0,0 +1,131 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import com.example.GoogleContacts_Cultura.DTO.TaskDeltaEvent;
+import com.example.GoogleContacts_Cultura.DTO.TaskFacets;
+import com.example.GoogleContacts_Cultura.DTO.TaskSummary;
+import com.example.GoogleContacts_Cultura.model.Category;
+import com.example.GoogleContacts_Cultura.model.TaskEventType;
+import com.example.GoogleContacts_Cultura.model.TaskStatus;
+import com.example.GoogleContacts_Cultura.repository.TaskRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Category x status task counts kept in memory: seeded by one GROUP BY at startup,
+// then moved by every task delta, so facet reads never scan the task table.
+// Deltas only come from this instance, so the seed is repeated every reseed-ms to pick up changes made elsewhere.
+@Service
+public class TaskFacetCounter {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskFacetCounter.class);
+
+    private static final TaskStatus[] STATUSES = TaskStatus.values();
+
+    private final TaskRepo taskRepo;
+    private final EnumMap<Category, LongAdder[]> counters = new EnumMap<>(Category.class);
+    private volatile boolean seeded = false;
+    // Feed version of the newest delta that has reached this counter, and of the newest one a seed already covers
+    private final AtomicLong latestVersion = new AtomicLong(Long.MIN_VALUE);
+    private long seededThrough = Long.MIN_VALUE; // guarded by this
+
+    public TaskFacetCounter(TaskRepo taskRepo) {
+        this.taskRepo = taskRepo;
+        for (Category category : Category.values()) {
+            LongAdder[] row = new LongAdder[STATUSES.length];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = new LongAdder();
+            }
+            counters.put(category, row);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        boolean first = !seeded;
+        reseed();
+        if (first) {
+            logger.info("Task facet counters seeded");
+        }
+    }
+
+    // The query runs without the lock, so deltas keep flowing meanwhile. Every delta that reached this counter
+    // before the counts are swapped in committed before it was published, so the seed is taken to include it and
+    // it is skipped if it is still waiting for the lock; anything that slips between the two is fixed next reseed.
+    @Scheduled(initialDelayString = "${collaboraid.tasks.facets.reseed-ms:60000}",
+            fixedDelayString = "${collaboraid.tasks.facets.reseed-ms:60000}")
+    public void reseed() {
+        List<Object[]> rows = taskRepo.countByCategoryAndStatus();
+        synchronized (this) {
+            counters.values().forEach(row -> {
+                for (LongAdder counter : row) {
+                    counter.reset();
+                }
+            });
+            for (Object[] row : rows) {
+                add((Category) row[0], (TaskStatus) row[1], ((Number) row[2]).longValue());
+            }
+            seededThrough = latestVersion.get();
+            seeded = true;
+        }
+    }
+
+    // Deltas are delivered one at a time by TaskEventPublisher, in version order
+    @EventListener
+    public void onTaskDelta(TaskDeltaEvent event) {
+        latestVersion.accumulateAndGet(event.getVersion(), Math::max); // before the lock, so a seed in progress covers it
+        synchronized (this) {
+            if (!seeded || event.getVersion() <= seededThrough) {
+                return; // the seed query includes this change
+            }
+            apply(event);
+        }
+    }
+
+    private void apply(TaskDeltaEvent event) {
+        TaskSummary task = event.getTask();
+        if (event.getType() == TaskEventType.CREATED) {
+            add(task.getCategory(), task.getStatus(), 1);
+        } else if (event.getType() == TaskEventType.DELETED) {
+            add(task.getCategory(), task.getStatus(), -1);
+        } else {
+            add(task.getCategory(), event.getPreviousStatus(), -1);
+            add(task.getCategory(), task.getStatus(), 1);
+        }
+    }
+
+    public TaskFacets snapshot() {
+        Map<Category, Map<String, Long>> counts = new EnumMap<>(Category.class);
+        Map<String, Long> totals = new LinkedHashMap<>();
+        for (TaskStatus status : STATUSES) {
+            totals.put(status.getLabel(), 0L);
+        }
+
+        counters.forEach((category, row) -> {
+            Map<String, Long> byStatus = new LinkedHashMap<>();
+            for (int i = 0; i < row.length; i++) {
+                long count = row[i].sum();
+                byStatus.put(STATUSES[i].getLabel(), count);
+                totals.merge(STATUSES[i].getLabel(), count, Long::sum);
+            }
+            counts.put(category, byStatus);
+        });
+        return new TaskFacets(counts, totals);
+    }
+
+    private void add(Category category, TaskStatus status, long delta) {
+        if (category == null || status == null) {
+            return; // uncategorized tasks and unconverted legacy rows are not faceted
+        }
+        counters.get(category)[status.ordinal()].add(delta);
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import com.example.GoogleContacts_Cultura.DTO.TaskDeltaEvent;
+import com.example.GoogleContacts_Cultura.DTO.TaskSummary;
+import com.example.GoogleContacts_Cultura.model.Category;
+import com.example.GoogleContacts_Cultura.model.TaskEventType;
+import com.example.GoogleContacts_Cultura.model.TaskStatus;
+import com.example.GoogleContacts_Cultura.repository.TaskRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Ranks the open feed for one user ("For You"):
+//   score = (exploration + category affinity) * recency decay * poster reliability
+// Affinity vectors and poster counters live in memory and move with task deltas, and candidates come
+// from OpenTaskSnapshot, so a request is a single pass over the open tasks with no SQL.
+// A user's vector is reloaded from their history after affinity-ttl-ms, and at most affinity-max-users are kept.
+@Service
+public class TaskRecommender {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskRecommender.class);
+
+    // How much one past task says about what a user likes to help with
+    private static final double DONE_AS_ACCEPTOR_WEIGHT = 1.0;
+    private static final double ACCEPTED_WEIGHT = 0.5;       // accepted, not finished yet
+    private static final double DONE_AS_POSTER_WEIGHT = 0.3; // topics they needed help with themselves
+
+    // Laplace smoothing for the affinity share, and a floor so unfamiliar categories still surface
+    private static final double AFFINITY_SMOOTHING = 0.5;
+    private static final double EXPLORATION = 0.05;
+
+    private static final int CATEGORY_COUNT = Category.values().length;
+
+    private final TaskRepo taskRepo;
+    private final OpenTaskSnapshot openTaskSnapshot;
+    private final double recencyHalfLifeHours;
+    private final long affinityTtlNanos;
+    private final int affinityMaxUsers;
+
+    // Copy-on-write per user: readers always see a whole vector
+    private final ConcurrentHashMap<Long, Affinity> affinityByUser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, PosterStats> posterStats = new ConcurrentHashMap<>();
+    private volatile boolean posterStatsLoaded = false;
+
+    public TaskRecommender(TaskRepo taskRepo,
+                           OpenTaskSnapshot openTaskSnapshot,
+                           @Value("${collaboraid.tasks.for-you.recency-half-life-hours:48}") double recencyHalfLifeHours,
+                           @Value("${collaboraid.tasks.for-you.affinity-ttl-ms:1800000}") long affinityTtlMillis,
+                           @Value("${collaboraid.tasks.for-you.affinity-max-users:20000}") int affinityMaxUsers) {
+        this.taskRepo = taskRepo;
+        this.openTaskSnapshot = openTaskSnapshot;
+        this.recencyHalfLifeHours = recencyHalfLifeHours;
+        this.affinityTtlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, affinityTtlMillis));
+        this.affinityMaxUsers = Math.max(1, affinityMaxUsers);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void loadPosterStats() {
+        posterStats.clear();
+        for (Object[] row : taskRepo.countAcceptedAndDoneByPoster(TaskStatus.DONE)) {
+            PosterStats stats = stats((Long) row[0]);
+            stats.accepted.add(((Number) row[1]).longValue());
+            stats.done.add(row[2] == null ? 0 : ((Number) row[2]).longValue());
+        }
+        posterStatsLoaded = true;
+        logger.info("Poster reliability loaded for {} users", posterStats.size());
+    }
+
+    public List<TaskSummary> recommend(Long userId, int limit) {
+        double[] affinity = affinity(userId);
+        double[] share = affinityShare(affinity);
+        LocalDateTime now = LocalDateTime.now();
+
+        PriorityQueue<Scored> top = new PriorityQueue<>(Comparator.comparingDouble(Scored::score));
+        for (TaskSummary task : openTaskSnapshot.openTasks()) {
+            if (task.getUser() != null && Objects.equals(task.getUser().getId(), userId)) {
+                continue; // never recommend a user's own tasks
+            }
+            double categoryScore = EXPLORATION + (task.getCategory() != null ? share[task.getCategory().ordinal()] : 0);
+            double score = categoryScore * recency(task.getTimestamp(), now) * reliability(task);
+            top.offer(new Scored(task, score));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<Scored> ranked = new ArrayList<>(top);
+        ranked.sort(Comparator.comparingDouble(Scored::score).reversed());
+        List<TaskSummary> results = new ArrayList<>(ranked.size());
+        for (Scored scored : ranked) {
+            results.add(scored.task());
+        }
+        return results;
+    }
+
+    @EventListener
+    public void onTaskDelta(TaskDeltaEvent event) {
+        TaskSummary task = event.getTask();
+        Long posterId = task.getUser() != null ? task.getUser().getId() : null;
+        Long acceptorId = task.getAcceptedBy() != null ? task.getAcceptedBy().getId() : null;
+
+        if (event.getType() == TaskEventType.ACCEPTED) {
+            addAffinity(acceptorId, task.getCategory(), ACCEPTED_WEIGHT);
+            if (posterStatsLoaded && posterId != null) {
+                stats(posterId).accepted.increment();
+            }
+        } else if (task.getStatus() == TaskStatus.DONE && event.getPreviousStatus() != TaskStatus.DONE
+                && event.getType() != TaskEventType.DELETED) {
+            addAffinity(acceptorId, task.getCategory(), DONE_AS_ACCEPTOR_WEIGHT - ACCEPTED_WEIGHT);
+            addAffinity(posterId, task.getCategory(), DONE_AS_POSTER_WEIGHT);
+            if (posterStatsLoaded && posterId != null) {
+                stats(posterId).done.increment();
+            }
+        } else if (event.getType() == TaskEventType.DELETED && posterStatsLoaded && posterId != null) {
+            PosterStats stats = stats(posterId);
+            if (acceptorId != null) {
+                stats.accepted.decrement();
+            }
+            if (task.getStatus() == TaskStatus.DONE) {
+                stats.done.decrement();
+            }
+        }
+    }
+
+    // Expired vectors are reloaded on the next request anyway; this drops users who stopped asking and, beyond
+    // affinity-max-users, whichever users the map yields first
+    @Scheduled(fixedDelayString = "${collaboraid.tasks.for-you.affinity-sweep-ms:60000}")
+    public void evictAffinity() {
+        long now = System.nanoTime();
+        int excess = affinityByUser.size() - affinityMaxUsers;
+        for (Map.Entry<Long, Affinity> entry : affinityByUser.entrySet()) {
+            boolean expired = now - entry.getValue().loadedAt() >= affinityTtlNanos;
+            if ((expired || excess > 0) && affinityByUser.remove(entry.getKey(), entry.getValue())) {
+                excess--;
+            }
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private double[] affinity(Long userId) {
+        long now = System.nanoTime();
+        Affinity affinity = affinityByUser.get(userId);
+        if (affinity != null && now - affinity.loadedAt() < affinityTtlNanos) {
+            return affinity.weights();
+        }
+        // Loaded outside the map so the queries do not run inside a ConcurrentHashMap bin lock, which would hold up
+        // onTaskDelta for every user in the same bin. A delta landing mid-load can be missed; it only nudges a ranking.
+        Affinity loaded = new Affinity(loadAffinity(userId), now);
+        if (affinity == null) {
+            Affinity existing = affinityByUser.putIfAbsent(userId, loaded);
+            return existing != null ? existing.weights() : loaded.weights();
+        }
+        affinityByUser.replace(userId, affinity, loaded);
+        return loaded.weights();
+    }
+
+    // Seeded per user from their history, then kept current by onTaskDelta until it expires
+    private double[] loadAffinity(Long userId) {
+        double[] weights = new double[CATEGORY_COUNT];
+        for (TaskSummary task : taskRepo.findDoneSummariesByUserOrAccepter(userId)) {
+            if (task.getCategory() == null) {
+                continue;
+            }
+            if (task.getAcceptedBy() != null && userId.equals(task.getAcceptedBy().getId())) {
+                weights[task.getCategory().ordinal()] += DONE_AS_ACCEPTOR_WEIGHT;
+            } else {
+                weights[task.getCategory().ordinal()] += DONE_AS_POSTER_WEIGHT;
+            }
+        }
+        for (TaskSummary task : taskRepo.findSummariesByAcceptedById(userId)) {
+            if (task.getCategory() != null && task.getStatus() != TaskStatus.DONE) {
+                weights[task.getCategory().ordinal()] += ACCEPTED_WEIGHT;
+            }
+        }
+        return weights;
+    }
+
+    // Only users who have asked for recommendations are tracked; the others are seeded on first request
+    private void addAffinity(Long userId, Category category, double weight) {
+        if (userId == null || category == null) {
+            return;
+        }
+        affinityByUser.computeIfPresent(userId, (id, current) -> {
+            double[] next = current.weights().clone();
+            next[category.ordinal()] += weight;
+            return new Affinity(next, current.loadedAt());
+        });
+    }
+
+    private static double[] affinityShare(double[] weights) {
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        double denominator = total + AFFINITY_SMOOTHING * weights.length;
+        double[] share = new double[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            share[i] = (weights[i] + AFFINITY_SMOOTHING) / denominator;
+        }
+        return share;
+    }
+
+    // 1.0 for a task posted now, 0.5 after one half-life
+    private double recency(LocalDateTime timestamp, LocalDateTime now) {
+        if (timestamp == null) {
+            return 0.5;
+        }
+        double ageHours = Math.max(0, Duration.between(timestamp, now).toMinutes() / 60.0);
+        return Math.pow(0.5, ageHours / recencyHalfLifeHours);
+    }
+
+    // Share of the poster's accepted tasks that they saw through to Done, smoothed towards 1/2.
+    // Mapped to 0.5..1.5 so a new poster is neither boosted nor buried.
+    private double reliability(TaskSummary task) {
+        PosterStats stats = task.getUser() != null ? posterStats.get(task.getUser().getId()) : null;
+        if (stats == null) {
+            return 1.0;
+        }
+        double rate = (stats.done.sum() + 1.0) / (stats.accepted.sum() + 2.0);
+        return 0.5 + Math.min(1.0, Math.max(0.0, rate));
+    }
+
+    private PosterStats stats(Long posterId) {
+        return posterStats.computeIfAbsent(posterId, id -> new PosterStats());
+    }
+
+    private record Scored(TaskSummary task, double score) {}
+
+    private record Affinity(double[] weights, long loadedAt) {}
+
+    private static final class PosterStats {
+        private final LongAdder accepted = new LongAdder();
+        private final LongAdder done = new LongAdder();
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import com.example.GoogleContacts_Cultura.DTO.TaskSummary;
+import com.example.GoogleContacts_Cultura.model.TaskStatus;
+import com.example.GoogleContacts_Cultura.repository.TaskRepo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-memory inverted index over task title, description, poster username and category.
+// Kept in sync incrementally by TaskService, ranked with BM25, with prefix matching on every query term.
+@Service
+public class TaskSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskSearchIndex.class);
+
+    // Standard BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Field weights are folded into the term frequency (a BM25F-style simplification)
+    private static final int TITLE_WEIGHT = 3;
+    private static final int USERNAME_WEIGHT = 2;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    // Prefix matches score lower than exact matches and are capped so "a" does not expand to the whole dictionary
+    private static final double PREFIX_MATCH_FACTOR = 0.6;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private final TaskRepo taskRepo;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final Map<Long, IndexedTask> documents = new HashMap<>();
+    private long totalLength = 0;
+
+    public TaskSearchIndex(TaskRepo taskRepo) {
+        this.taskRepo = taskRepo;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            // Loaded under the write lock so a concurrent index() cannot be wiped by the rebuild
+            List<TaskSummary> tasks = taskRepo.findAllSummaries();
+            postings.clear();
+            documents.clear();
+            totalLength = 0;
+            for (TaskSummary task : tasks) {
+                add(task);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Task search index built with {} tasks and {} terms", documents.size(), postings.size());
+    }
+
+    // Insert or replace a task
+    public void index(TaskSummary task) {
+        if (task == null || task.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            remove(task.getId());
+            add(task);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void delete(Long taskId) {
+        lock.writeLock().lock();
+        try {
+            remove(taskId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Returns at most limit tasks ordered by BM25 score; status is an optional exact filter
+    public List<TaskSummary> search(String query, TaskStatus status, int limit) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (documents.isEmpty()) {
+                return Collections.emptyList();
+            }
+            double averageLength = (double) totalLength / documents.size();
+            Map<Long, Double> scores = new HashMap<>();
+
+            for (String queryTerm : queryTerms) {
+                // Best match per document for this query term, so "prog" matching both
+                // "program" and "programming" in the same task is not counted twice
+                Map<Long, Double> termScores = new HashMap<>();
+                collect(queryTerm, 1.0, status, averageLength, termScores);
+
+                SortedMap<String, Map<Long, Integer>> prefixed = postings.subMap(queryTerm + Character.MIN_VALUE, queryTerm + Character.MAX_VALUE);
+                int expansions = 0;
+                for (String term : prefixed.keySet()) {
+                    if (++expansions > MAX_PREFIX_EXPANSIONS) {
+                        break;
+                    }
+                    collect(term, PREFIX_MATCH_FACTOR, status, averageLength, termScores);
+                }
+
+                termScores.forEach((taskId, score) -> scores.merge(taskId, score, Double::sum));
+            }
+
+            PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                top.offer(entry);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+
+            List<Map.Entry<Long, Double>> ranked = new ArrayList<>(top);
+            ranked.sort(Map.Entry.<Long, Double>comparingByValue(Comparator.reverseOrder()));
+
+            List<TaskSummary> results = new ArrayList<>(ranked.size());
+            for (Map.Entry<Long, Double> entry : ranked) {
+                results.add(documents.get(entry.getKey()).summary);
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+    // Internals, callers hold the appropriate lock
+
+    private void collect(String term, double factor, TaskStatus status, double averageLength, Map<Long, Double> termScores) {
+        Map<Long, Integer> postingList = postings.get(term);
+        if (postingList == null) {
+            return;
+        }
+        int documentCount = documents.size();
+        int documentFrequency = postingList.size();
+        double idf = Math.log(1 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+
+        for (Map.Entry<Long, Integer> posting : postingList.entrySet()) {
+            IndexedTask document = documents.get(posting.getKey());
+            if (status != null && status != document.summary.getStatus()) {
+                continue;
+            }
+            int tf = posting.getValue();
+            double norm = K1 * (1 - B + B * document.length / averageLength);
+            double score = factor * idf * (tf * (K1 + 1)) / (tf + norm);
+            termScores.merge(posting.getKey(), score, Math::max);
+        }
+    }
+
+    private void add(TaskSummary task) {
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        addField(termFrequencies, task.getTitle(), TITLE_WEIGHT);
+        addField(termFrequencies, task.getDescription(), DESCRIPTION_WEIGHT);
+        addField(termFrequencies, task.getUser() != null ? task.getUser().getUsername() : null, USERNAME_WEIGHT);
+        addField(termFrequencies, task.getCategory() != null ? task.getCategory().name() : null, CATEGORY_WEIGHT);
+
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), term -> new HashMap<>()).put(task.getId(), entry.getValue());
+            length += entry.getValue();
+        }
+        documents.put(task.getId(), new IndexedTask(task, termFrequencies.keySet().toArray(new String[0]), length));
+        totalLength += length;
+    }
+
+    private void remove(Long taskId) {
+        IndexedTask existing = documents.remove(taskId);
+        if (existing == null) {
+            return;
+        }
+        for (String term : existing.terms) {
+            Map<Long, Integer> postingList = postings.get(term);
+            if (postingList != null) {
+                postingList.remove(taskId);
+                if (postingList.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        totalLength -= existing.length;
+    }
+
+    private static void addField(Map<String, Integer> termFrequencies, String text, int weight) {
+        for (String token : tokenize(text)) {
+            termFrequencies.merge(token, weight, Integer::sum);
+        }
+    }
+
+    // Lower-cases and splits on anything that is not a letter or digit ("ART_DESIGN" -> art, design)
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return Collections.emptyList();
+        }
+        List<String> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                current.append(Character.toLowerCase(c));
+            } else if (current.length() > 0) {
+                tokens.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (current.length() > 0) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+
+    private static class IndexedTask {
+        private final TaskSummary summary;
+        private final String[] terms;
+        private final int length;
+
+        private IndexedTask(TaskSummary summary, String[] terms, int length) {
+            this.summary = summary;
+            this.terms = terms;
+            this.length = length;
+        }
+    }
+}
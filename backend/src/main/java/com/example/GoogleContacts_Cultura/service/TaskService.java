@@ -1,13 +1,23 @@
 package com.example.GoogleContacts_Cultura.service;
 
+import com.example.GoogleContacts_Cultura.DTO.TaskCursor;
+import com.example.GoogleContacts_Cultura.DTO.TaskEventReplay;
+import com.example.GoogleContacts_Cultura.DTO.TaskFacets;
+import com.example.GoogleContacts_Cultura.DTO.TaskPage;
+import com.example.GoogleContacts_Cultura.DTO.TaskSummary;
 import com.example.GoogleContacts_Cultura.controller.NotificationController;
 import com.example.GoogleContacts_Cultura.entity.TaskEntity;
 import com.example.GoogleContacts_Cultura.repository.TaskRepo;
 import com.example.GoogleContacts_Cultura.entity.UserEntity;
+import com.example.GoogleContacts_Cultura.model.Category;
+import com.example.GoogleContacts_Cultura.model.TaskEventType;
+import com.example.GoogleContacts_Cultura.model.TaskStatus;
 import com.example.GoogleContacts_Cultura.repository.UserRepo;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
@@ -16,27 +26,42 @@ import java.util.Optional;
 
 @Service
 public class TaskService {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
     private final TaskRepo taskRepo;
     private final UserRepo userRepo;
     private final NotificationService notificationService;
+    private final TaskSearchIndex taskSearchIndex;
+    private final OngoingTaskGuard ongoingTaskGuard;
+    private final TaskEventPublisher taskEventPublisher;
+    private final OpenTaskSnapshot openTaskSnapshot;
+    private final TaskFacetCounter taskFacetCounter;
+    private final TaskRecommender taskRecommender;
 
 
 
-    public TaskService(TaskRepo taskRepo, UserRepo userRepo, NotificationService notificationService) {
+    public TaskService(TaskRepo taskRepo, UserRepo userRepo, NotificationService notificationService, TaskSearchIndex taskSearchIndex, OngoingTaskGuard ongoingTaskGuard, TaskEventPublisher taskEventPublisher, OpenTaskSnapshot openTaskSnapshot, TaskFacetCounter taskFacetCounter, TaskRecommender taskRecommender) {
         this.taskRepo = taskRepo;
         this.userRepo = userRepo;
         this.notificationService = notificationService;
+        this.taskSearchIndex = taskSearchIndex;
+        this.ongoingTaskGuard = ongoingTaskGuard;
+        this.taskEventPublisher = taskEventPublisher;
+        this.openTaskSnapshot = openTaskSnapshot;
+        this.taskFacetCounter = taskFacetCounter;
+        this.taskRecommender = taskRecommender;
 
     }
 
     // Fetch all tasks with "Active" status
     public List<TaskEntity> getActiveTasks() {
-        return taskRepo.findByStatus("ACTIVE");  // Assuming "Active" is a status for ongoing tasks
+        return taskRepo.findByActiveStatus("ACTIVE");
     }
 
     // Fetch all tasks with "Inactive" status
     public List<TaskEntity> getInactiveTasks() {
-        return taskRepo.findByStatus("INACTIVE");  // Assuming "Inactive" is a status for completed or canceled tasks
+        return taskRepo.findByActiveStatus("INACTIVE");
     }
 
     // Deactivate a task by changing its status to "Inactive"
@@ -45,7 +70,7 @@ public class TaskService {
         if (optionalTask.isPresent()) {
             TaskEntity task = optionalTask.get();
             task.setActiveStatus("INACTIVE");  // Deactivating the task
-            taskRepo.save(task);
+            transition(task, task.getStatus(), TaskEventType.UPDATED); // lifecycle status is unchanged
             return true;
         }
         return false;
@@ -55,8 +80,64 @@ public class TaskService {
         return taskRepo.findAll();
     }
 
-    public List<TaskEntity> findTasksByStatus(String status) {
-        return taskRepo.findByStatus(status); // Call repository method
+    public List<TaskSummary> findTasksByStatus(TaskStatus status) {
+        return taskRepo.findSummariesByStatus(status); // Single joined projection query
+    }
+
+    // Keyset-paginated feed: one bounded index range scan per page, independent of table size
+    public TaskPage<TaskSummary> findTaskPageByStatus(TaskStatus status, String cursor, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1); // one extra row tells us if there is a next page
+
+        List<TaskSummary> tasks;
+        if (cursor == null || cursor.isBlank()) {
+            tasks = taskRepo.findFeedPage(status, pageRequest);
+        } else {
+            TaskCursor after = TaskCursor.decode(cursor);
+            tasks = taskRepo.findFeedPageAfter(status, after.getTimestamp(), after.getId(), pageRequest);
+        }
+
+        if (tasks.size() <= pageSize) {
+            return new TaskPage<>(tasks, null);
+        }
+
+        List<TaskSummary> page = tasks.subList(0, pageSize);
+        TaskSummary last = page.get(pageSize - 1);
+        return new TaskPage<>(page, new TaskCursor(last.getTimestamp(), last.getId()).encode());
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+    // Open feed, served as pre-serialized JSON from the in-memory snapshot
+
+    public long getOpenFeedVersion() {
+        return openTaskSnapshot.version();
+    }
+
+    public byte[] getOpenTasksJson(Category category) {
+        return openTaskSnapshot.listJson(category);
+    }
+
+    public byte[] getOpenTaskPageJson(Category category, String cursor, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return openTaskSnapshot.pageJson(category, cursor, pageSize);
+    }
+
+    public TaskFacets getTaskFacets() {
+        return taskFacetCounter.snapshot();
+    }
+
+    public List<TaskSummary> getTasksForYou(Long userId, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return taskRecommender.recommend(userId, pageSize);
+    }
+
+    public List<TaskSummary> searchTasks(String query, String status, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return taskSearchIndex.search(query, parseStatus(status), pageSize);
+    }
+
+    public TaskEventReplay getTaskEventsSince(long sinceVersion, Category category) {
+        return taskEventPublisher.replaySince(sinceVersion, category);
     }
 
     public Optional<TaskEntity> findById(Long id) {
@@ -64,39 +145,35 @@ public class TaskService {
     }
 
 
-    public List<TaskEntity> getPostedTasksByUser(Long userId) {
-        return taskRepo.findByUserId(userId);
+    public List<TaskSummary> getPostedTasksByUser(Long userId) {
+        return taskRepo.findSummariesByUserId(userId);
     }
 
-    public List<TaskEntity> getAcceptedTasksByUser(Long userId) {
-        return taskRepo.findByAcceptedById(userId);
+    public List<TaskSummary> getAcceptedTasksByUser(Long userId) {
+        return taskRepo.findSummariesByAcceptedById(userId);
     }
 
-    public List<TaskEntity> getTaskHistoryByUser(Long userId) {
-        return taskRepo.findDoneTasksByUserOrAccepter(userId);
+    public List<TaskSummary> getTaskHistoryByUser(Long userId) {
+        return taskRepo.findDoneSummariesByUserOrAccepter(userId);
     }
 
     public List<TaskEntity> getPendingVerificationTasks(Long userId) {
-        return taskRepo.findByUserIdAndStatus(userId, "Pending Verification");
+        return taskRepo.findByUserIdAndStatus(userId, TaskStatus.PENDING_VERIFICATION);
     }
 
 
 
+    @Transactional
     public TaskEntity save(TaskEntity task, Long userId) {
         UserEntity user = userRepo.findById(userId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
 
-        boolean hasOngoingTask = taskRepo.existsByUserIdAndStatus(userId, "In Progress") ||
-                taskRepo.existsByAcceptedByIdAndStatus(userId, "In Progress") ||
-                taskRepo.existsByUserIdAndStatus(userId, "Pending Verification") ||
-                taskRepo.existsByAcceptedByIdAndStatus(userId, "Pending Verification");
-
-        if (hasOngoingTask) {
+        if (ongoingTaskGuard.hasOngoingTask(userId)) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "You must complete and verify your current task before creating a new one.");
         }
 
         task.setUser(user);
-        task.setStatus("Open");
+        task.setStatus(TaskStatus.OPEN);
         task.setTimestamp(LocalDateTime.now());
 
         if (task.getCategory() == null) {
@@ -104,40 +181,39 @@ public class TaskService {
         }
 
         TaskEntity savedTask = taskRepo.save(task);
+        afterChange(savedTask, null, TaskEventType.CREATED);
 
-        notificationService.sendNotification("New task added: " + savedTask.getTitle(), "TASK_ADDED");
+        notificationService.sendNotification("New task added: " + savedTask.getTitle(), "TASK_ADDED", savedTask.getCategory().name());
 
         return savedTask;
     }
 
+    @Transactional
     public TaskEntity acceptTask(Long taskId, Long userId) {
         UserEntity user = userRepo.findById(userId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
-        TaskEntity task = taskRepo.findById(taskId)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Task not found"));
 
         // Check if the user has any ongoing task (either as creator or acceptor)
-        boolean hasOngoingTask = taskRepo.existsByUserIdAndStatus(userId, "In Progress") ||
-                taskRepo.existsByAcceptedByIdAndStatus(userId, "In Progress") ||
-                taskRepo.existsByUserIdAndStatus(userId, "Pending Verification") ||
-                taskRepo.existsByAcceptedByIdAndStatus(userId, "Pending Verification");
-
-        if (hasOngoingTask) {
+        if (ongoingTaskGuard.hasOngoingTask(userId)) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "You must complete and verify your current task before accepting a new one.");
         }
 
-        if (!"Open".equalsIgnoreCase(task.getStatus())) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "This task is no longer available for acceptance.");
+        // Single conditional UPDATE instead of read-check-save, so two users racing for the same task cannot both win.
+        // It is the Open -> In Progress edge of the transition table, applied in SQL.
+        if (taskRepo.acceptIfOpen(taskId, user) == 0) {
+            if (!taskRepo.existsById(taskId)) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Task not found");
+            }
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "This task is no longer available for acceptance.");
         }
 
-        task.setAcceptedBy(user);
-        task.setStatus("In Progress");
+        TaskEntity task = taskRepo.findById(taskId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Task not found"));
+        afterChange(task, TaskStatus.OPEN, TaskEventType.ACCEPTED);
 
         String message = user.getUsername() + " accepted the task \"" + task.getTitle() + "\"";
         notificationService.sendNotificationToUser(message, "TASK_ACCEPTED", task.getUser());
-
-
-        return taskRepo.save(task);
+        return task;
     }
 
 
@@ -146,31 +222,30 @@ public class TaskService {
     //------------------------------------------------------------------------------------------------------------------
     //Verification Part Before Marking Status as "Done"
 
+    @Transactional
     public void requestMarkAsDone(Long taskId, Long userId) {
         TaskEntity task = taskRepo.findById(taskId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Task not found"));
 
-        if (!userId.equals(task.getUser().getId()) && !userId.equals(task.getAcceptedBy().getId())) {
+        if (!isParticipant(task, userId)) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "You are not authorized to mark this task");
         }
 
-        if ("Done".equals(task.getStatus())) {
+        if (task.getStatus() == TaskStatus.DONE) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Task is already marked as done");
         }
 
-        if ("Pending Verification".equals(task.getStatus())) {
+        if (task.getStatus() == TaskStatus.PENDING_VERIFICATION) {
             if (!task.getMarkedDoneBy().equals(userId)) {
-                task.setStatus("Done");
-                taskRepo.save(task);
+                transition(task, TaskStatus.DONE, TaskEventType.STATUS_CHANGED);
                 return;
             } else {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Waiting for verification from the other user");
             }
         }
 
-        task.setStatus("Pending Verification");
         task.setMarkedDoneBy(userId);
-        taskRepo.save(task);
+        transition(task, TaskStatus.PENDING_VERIFICATION, TaskEventType.STATUS_CHANGED);
 
         // Send notification
         String username = userRepo.findById(userId)
@@ -185,21 +260,21 @@ public class TaskService {
 
     }
 
+    @Transactional
     public void confirmTaskDone(Long taskId, Long userId) {
         TaskEntity task = taskRepo.findById(taskId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Task not found"));
 
-        if (!userId.equals(task.getUser().getId()) && !userId.equals(task.getAcceptedBy().getId())) {
+        if (!isParticipant(task, userId)) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "You are not authorized to confirm this task");
         }
 
-        if (!"Pending Verification".equals(task.getStatus())) {
+        if (task.getStatus() != TaskStatus.PENDING_VERIFICATION) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Task is not pending verification");
         }
 
         if (!task.getMarkedDoneBy().equals(userId)) {
-            task.setStatus("Done");
-            taskRepo.save(task);
+            transition(task, TaskStatus.DONE, TaskEventType.STATUS_CHANGED);
 
             // Send notification
             String username = userRepo.findById(userId)
@@ -226,10 +301,13 @@ public class TaskService {
     //Delete & Update Services
 
     public boolean deleteById(Long id) {
-        if (!taskRepo.existsById(id)) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Task not found");
-        }
+        TaskEntity task = taskRepo.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Task not found"));
+        TaskSummary summary = TaskSummary.from(task);
         taskRepo.deleteById(id);
+        TransactionCallbacks.afterCommit(() -> taskSearchIndex.delete(id));
+        ongoingTaskGuard.onReleased(task);
+        taskEventPublisher.publish(TaskEventType.DELETED, summary.getStatus(), summary);
         return true;
     }
 
@@ -245,10 +323,66 @@ public class TaskService {
 
         existingTask.setTitle(updatedTask.getTitle());
         existingTask.setDescription(updatedTask.getDescription());
-        existingTask.setStatus(updatedTask.getStatus());
         existingTask.setTimestamp(LocalDateTime.now());  // Update timestamp
 
-        return taskRepo.save(existingTask);
+        // Status only moves through accept / request-done / confirm-done. The admin editor always
+        // sends "Open", so the submitted status is not applied here.
+        return transition(existingTask, existingTask.getStatus(), TaskEventType.UPDATED);
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+    // Lifecycle
+
+    // Every status change goes through here: checks the transition table, saves, then runs the shared hooks
+    private TaskEntity transition(TaskEntity task, TaskStatus target, TaskEventType eventType) {
+        TaskStatus previous = task.getStatus();
+        if (previous != target) {
+            if (previous == null || !previous.canTransitionTo(target)) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Task cannot move from " + label(previous) + " to " + label(target) + ".");
+            }
+            task.setStatus(target);
+        }
+        TaskEntity savedTask = taskRepo.save(task);
+        afterChange(savedTask, previous, eventType);
+        return savedTask;
+    }
+
+    // Keeps the search index, the ongoing-task cache and the feed subscribers in step with a saved change
+    private void afterChange(TaskEntity task, TaskStatus previous, TaskEventType eventType) {
+        TaskSummary summary = TaskSummary.from(task);
+        TransactionCallbacks.afterCommit(() -> taskSearchIndex.index(summary));
+
+        boolean wasOngoing = previous != null && previous.isOngoing();
+        boolean isOngoing = task.getStatus() != null && task.getStatus().isOngoing();
+        if (isOngoing && !wasOngoing) {
+            ongoingTaskGuard.onAccepted(task);
+        } else if (wasOngoing && !isOngoing) {
+            ongoingTaskGuard.onReleased(task);
+        }
+
+        taskEventPublisher.publish(eventType, previous, summary);
+    }
+
+    private static boolean isParticipant(TaskEntity task, Long userId) {
+        return userId.equals(task.getUser().getId())
+                || (task.getAcceptedBy() != null && userId.equals(task.getAcceptedBy().getId()));
+    }
+
+    private static String label(TaskStatus status) {
+        return status == null ? "an unknown status" : status.getLabel();
+    }
+
+    // Optional status filter from a query parameter, e.g. ?status=In%20Progress
+    private static TaskStatus parseStatus(String status) {
+        if (status == null || status.isBlank()) {
+            return null;
+        }
+        try {
+            return TaskStatus.fromLabel(status);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown task status: " + status);
+        }
     }
 
 
@@ -0,0 +1,43 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import com.example.GoogleContacts_Cultura.model.TaskStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Fills tbl_task.status_code from the old free-text status column for rows written before the column existed.
+// Runs before ApplicationReadyEvent, so the in-memory feed, index and counters load already-converted rows.
+@Component
+public class TaskStatusBackfill implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(TaskStatusBackfill.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TaskStatusBackfill(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        StringBuilder sql = new StringBuilder("UPDATE tbl_task SET status_code = CASE status");
+        for (TaskStatus status : TaskStatus.values()) {
+            sql.append(" WHEN '").append(status.getLabel()).append("' THEN ").append(status.getCode());
+        }
+        sql.append(" END WHERE status_code IS NULL AND status IS NOT NULL");
+
+        try {
+            int rows = jdbcTemplate.update(sql.toString());
+            if (rows > 0) {
+                logger.info("Backfilled status_code for {} tasks", rows);
+            }
+        } catch (DataAccessException e) {
+            // Fresh schema: there is no legacy status column to convert from
+            logger.debug("Skipping task status backfill: {}", e.getMessage());
+        }
+    }
+}
@@ -11,6 +11,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -40,6 +41,7 @@ public class UserService {
     }
 
     // Encrypt password before saving and send notification
+    @Transactional
     public UserEntity registerUser(UserEntity user) {
         user.setPassword(passwordEncoder.encode(user.getPassword()));
         user.setRole(Role.USER);
@@ -190,6 +192,7 @@ public class UserService {
     //-----------------------------------------------------------------------------------------------------------------
     //REQUETS ADMIN ROLE
 
+    @Transactional
     public void requestAdminRole(String token) {
         String email = jwtUtil.extractUsername(token);
         UserEntity user = userRepo.findByEmail(email)
@@ -205,6 +208,7 @@ public class UserService {
     }
 
 
+    @Transactional
     public void handleRoleRequest(Long requestId, boolean approve) {
         RoleRequest request = roleRequestRepo.findById(requestId)
                 .orElseThrow(() -> new RuntimeException("Role request not found"));
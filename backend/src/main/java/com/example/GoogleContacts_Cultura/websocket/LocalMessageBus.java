@@ -0,0 +1,22 @@
+package com.example.GoogleContacts_Cultura.websocket;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+// Single node: straight to this JVM's broker
+@Service
+@ConditionalOnProperty(name = "collaboraid.bus.mode", havingValue = "local", matchIfMissing = true)
+public class LocalMessageBus implements MessageBus {
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    public LocalMessageBus(SimpMessagingTemplate messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    @Override
+    public void convertAndSend(String destination, Object payload) {
+        messagingTemplate.convertAndSend(destination, payload);
+    }
+}
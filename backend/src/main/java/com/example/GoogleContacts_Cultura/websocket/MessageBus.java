@@ -0,0 +1,17 @@
+package com.example.GoogleContacts_Cultura.websocket;
+
+// Fan-out point for everything pushed to STOMP clients. Callers use this instead of SimpMessagingTemplate so the
+// same send reaches subscribers on every node (collaboraid.bus.mode=socket), not only the local in-memory broker.
+public interface MessageBus {
+
+    void convertAndSend(String destination, Object payload);
+
+    // Same destination scheme as SimpMessagingTemplate.convertAndSendToUser: /user/{user}{destination}
+    default void convertAndSendToUser(String user, String destination, Object payload) {
+        convertAndSend(userDestination(user, destination), payload);
+    }
+
+    static String userDestination(String user, String destination) {
+        return "/user/" + user.replace("/", "%2F") + (destination.startsWith("/") ? destination : "/" + destination);
+    }
+}
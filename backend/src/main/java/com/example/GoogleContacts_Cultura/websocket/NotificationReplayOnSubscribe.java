@@ -0,0 +1,91 @@
+package com.example.GoogleContacts_Cultura.websocket;
+
+import com.example.GoogleContacts_Cultura.DTO.NotificationDTO;
+import com.example.GoogleContacts_Cultura.service.NotificationReplayBuffer;
+import com.example.GoogleContacts_Cultura.service.PresenceService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.List;
+
+// Replays missed notifications when a client subscribes with a last-seen-id header, e.g. after a reconnect:
+//   SUBSCRIBE destination:/user/queue/notifications last-seen-id:1234
+// The frames go straight to that one subscription on the client outbound channel, ahead of anything live.
+// Clients dedupe by id, since a notification pushed while the replay is sent can arrive both ways.
+@Component
+public class NotificationReplayOnSubscribe {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationReplayOnSubscribe.class);
+
+    public static final String LAST_SEEN_HEADER = "last-seen-id";
+
+    private final NotificationReplayBuffer replayBuffer;
+    private final PresenceService presenceService;
+    // Looked up lazily: both belong to the broker configuration
+    private final ObjectProvider<MessageChannel> clientOutboundChannel;
+    private final ObjectProvider<MessageConverter> brokerMessageConverter;
+
+    public NotificationReplayOnSubscribe(NotificationReplayBuffer replayBuffer,
+                                         PresenceService presenceService,
+                                         @Qualifier("clientOutboundChannel") ObjectProvider<MessageChannel> clientOutboundChannel,
+                                         @Qualifier("brokerMessageConverter") ObjectProvider<MessageConverter> brokerMessageConverter) {
+        this.replayBuffer = replayBuffer;
+        this.presenceService = presenceService;
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.brokerMessageConverter = brokerMessageConverter;
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String lastSeen = headers.getFirstNativeHeader(LAST_SEEN_HEADER);
+        String destination = headers.getDestination();
+        if (lastSeen == null || destination == null || headers.getSessionId() == null || headers.getSubscriptionId() == null) {
+            return;
+        }
+        long lastSeenId;
+        try {
+            lastSeenId = Long.parseLong(lastSeen.trim());
+        } catch (NumberFormatException e) {
+            return;
+        }
+
+        List<NotificationDTO> missed;
+        if (destination.equals(NotificationReplayBuffer.BROADCAST_TOPIC) || destination.equals(NotificationReplayBuffer.ALL_USERS_TOPIC)) {
+            missed = replayBuffer.replayTopic(destination, lastSeenId);
+        } else if (destination.equals("/user" + NotificationReplayBuffer.USER_QUEUE) && event.getUser() != null) {
+            Long userId = presenceService.userForSession(headers.getSessionId());
+            missed = replayBuffer.replayForUser(userId, event.getUser().getName(), lastSeenId);
+        } else {
+            return;
+        }
+        for (NotificationDTO notification : missed) {
+            send(headers.getSessionId(), headers.getSubscriptionId(), destination, notification);
+        }
+        if (!missed.isEmpty()) {
+            logger.debug("Replayed {} notifications on {} to session {}", missed.size(), destination, headers.getSessionId());
+        }
+    }
+
+    private void send(String sessionId, String subscriptionId, String destination, NotificationDTO notification) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        accessor.setLeaveMutable(true);
+        Message<?> message = brokerMessageConverter.getObject().toMessage(notification, accessor.getMessageHeaders());
+        if (message != null) {
+            clientOutboundChannel.getObject().send(message);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.GoogleContacts_Cultura.websocket;
+
+// What a lagging session may do with a queued outbound frame, decided by its STOMP destination
+public enum OutboundPolicy {
+    // Chat and anything unrecognised: never dropped; if it cannot fit, the session is closed so the client resumes via /sync
+    KEEP,
+    // Notifications and staff alerts: only the newest pending frame per destination is kept
+    COALESCE,
+    // Task feed deltas: versioned, so a client that misses some catches up with /api/task/events?since=
+    DROP;
+
+    public static OutboundPolicy forDestination(String destination) {
+        if (destination == null) {
+            return KEEP;
+        }
+        if (destination.startsWith("/topic/tasks")) {
+            return DROP;
+        }
+        if (destination.startsWith("/topic/notifications") || destination.startsWith("/topic/staff-alerts")
+                || destination.endsWith("/queue/notifications")) {
+            return COALESCE;
+        }
+        return KEEP;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.GoogleContacts_Cultura.websocket;
+
+import com.example.GoogleContacts_Cultura.service.PresenceService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+// Every inbound STOMP frame, heartbeats included, refreshes the sender's presence TTL
+@Configuration
+public class PresenceHeartbeatInterceptor implements WebSocketMessageBrokerConfigurer, ChannelInterceptor {
+
+    // Looked up lazily: PresenceService needs the messaging template this configuration helps build
+    private final ObjectProvider<PresenceService> presenceService;
+
+    public PresenceHeartbeatInterceptor(ObjectProvider<PresenceService> presenceService) {
+        this.presenceService = presenceService;
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(this);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        presenceService.getObject().touch(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+        return message;
+    }
+}
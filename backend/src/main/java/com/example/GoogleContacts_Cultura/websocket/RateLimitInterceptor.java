@@ -0,0 +1,63 @@
+package com.example.GoogleContacts_Cultura.websocket;
+
+import com.example.GoogleContacts_Cultura.model.RateLimitPolicy;
+import com.example.GoogleContacts_Cultura.service.PresenceService;
+import com.example.GoogleContacts_Cultura.service.RateLimiter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+import java.util.Map;
+
+// RateLimiter for STOMP SENDs to /app/sendMessage. Over-budget frames are dropped rather than answered with an
+// ERROR frame (which would end the STOMP session); the sender is told on /topic/rate-limit/{userId} instead.
+@Configuration
+public class RateLimitInterceptor implements WebSocketMessageBrokerConfigurer, ChannelInterceptor {
+
+    public static final String RATE_LIMIT_TOPIC = "/topic/rate-limit/";
+
+    private final RateLimiter rateLimiter;
+    // Looked up lazily: both need the messaging template this configuration helps build
+    private final ObjectProvider<PresenceService> presenceService;
+    private final ObjectProvider<MessageBus> messageBus;
+
+    public RateLimitInterceptor(RateLimiter rateLimiter,
+                                ObjectProvider<PresenceService> presenceService,
+                                ObjectProvider<MessageBus> messageBus) {
+        this.rateLimiter = rateLimiter;
+        this.presenceService = presenceService;
+        this.messageBus = messageBus;
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(this);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                || !"/app/sendMessage".equals(SimpMessageHeaderAccessor.getDestination(message.getHeaders()))) {
+            return message;
+        }
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        Long userId = presenceService.getObject().userForSession(sessionId);
+        long key = userId != null ? userId : RateLimiter.anonymousKey(sessionId);
+
+        long wait = rateLimiter.tryAcquire(RateLimitPolicy.CHAT, key);
+        if (wait == 0) {
+            return message;
+        }
+        if (userId != null) {
+            messageBus.getObject().convertAndSend(RATE_LIMIT_TOPIC + userId,
+                    Map.of("destination", "/app/sendMessage", "retryAfterSeconds", RateLimiter.retryAfterSeconds(wait)));
+        }
+        return null;
+    }
+}
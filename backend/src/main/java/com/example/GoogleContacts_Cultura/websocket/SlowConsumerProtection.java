@@ -0,0 +1,88 @@
+package com.example.GoogleContacts_Cultura.websocket;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Puts every STOMP WebSocket session behind a SlowConsumerSessionDecorator. Picked up alongside the main
+// broker configuration, since Spring combines all WebSocketMessageBrokerConfigurer beans.
+@Configuration
+public class SlowConsumerProtection implements WebSocketMessageBrokerConfigurer {
+
+    private final MeterRegistry meterRegistry;
+    private final long sendTimeLimitMillis;
+    private final int bufferSizeLimit;
+
+    // Writes to slow sockets block; virtual threads keep that off the broker's platform threads
+    private final ExecutorService writers = Executors.newVirtualThreadPerTaskExecutor();
+
+    public SlowConsumerProtection(MeterRegistry meterRegistry,
+                                  @Value("${collaboraid.websocket.send-time-limit-ms:10000}") long sendTimeLimitMillis,
+                                  @Value("${collaboraid.websocket.buffer-size-limit-bytes:524288}") int bufferSizeLimit) {
+        this.meterRegistry = meterRegistry;
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+        this.bufferSizeLimit = bufferSizeLimit;
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.addDecoratorFactory(SessionDecoratingHandler::new);
+    }
+
+    @PreDestroy
+    public void stop() {
+        writers.shutdown();
+    }
+
+    // Hands the decorated session to the STOMP handler, which then only ever writes through it
+    private class SessionDecoratingHandler extends WebSocketHandlerDecorator {
+
+        private final Map<String, SlowConsumerSessionDecorator> sessions = new ConcurrentHashMap<>();
+
+        SessionDecoratingHandler(WebSocketHandler delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+            SlowConsumerSessionDecorator decorated = new SlowConsumerSessionDecorator(session, writers, meterRegistry,
+                    sendTimeLimitMillis, bufferSizeLimit);
+            sessions.put(session.getId(), decorated);
+            super.afterConnectionEstablished(decorated);
+        }
+
+        @Override
+        public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+            WebSocketSession decorated = sessions.get(session.getId());
+            super.handleMessage(decorated != null ? decorated : session, message);
+        }
+
+        @Override
+        public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+            WebSocketSession decorated = sessions.get(session.getId());
+            super.handleTransportError(decorated != null ? decorated : session, exception);
+        }
+
+        @Override
+        public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+            SlowConsumerSessionDecorator decorated = sessions.remove(session.getId());
+            if (decorated != null) {
+                decorated.release();
+            }
+            super.afterConnectionClosed(decorated != null ? decorated : session, closeStatus);
+        }
+    }
+}
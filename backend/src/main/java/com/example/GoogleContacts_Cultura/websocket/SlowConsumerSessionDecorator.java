@@ -0,0 +1,217 @@
+package com.example.GoogleContacts_Cultura.websocket;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+// Bounded, policy-aware outbound buffer for one WebSocket session. sendMessage only queues, so a slow client
+// never blocks the broker's outbound threads; frames are written by a drain task on the supplied executor.
+// When the buffer passes its byte limit, task deltas are dropped and notifications coalesced (OutboundPolicy);
+// if chat alone still does not fit, or a single write has been stuck for longer than the send-time limit,
+// the session is closed with RESUMABLE and the client reconnects and catches up.
+public class SlowConsumerSessionDecorator extends WebSocketSessionDecorator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowConsumerSessionDecorator.class);
+
+    // 4000-4999 is reserved for applications; clients treat this code as "reconnect and resume", not as an error
+    public static final CloseStatus RESUMABLE = new CloseStatus(4001, "Slow consumer, reconnect and resume");
+
+    private final Executor executor;
+    private final MeterRegistry meterRegistry;
+    private final long sendTimeLimitNanos;
+    private final int bufferSizeLimit;
+    private final Gauge queuedFramesGauge;
+    private final Gauge queuedBytesGauge;
+
+    // Guarded by pending
+    private final ArrayDeque<Frame> pending = new ArrayDeque<>();
+    private long bufferedBytes;
+    private boolean draining;
+
+    private volatile long sendStartedAt; // System.nanoTime() of the write in progress, 0 when idle
+    private volatile boolean closing;
+
+    public SlowConsumerSessionDecorator(WebSocketSession session, Executor executor, MeterRegistry meterRegistry,
+                                        long sendTimeLimitMillis, int bufferSizeLimit) {
+        super(session);
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        this.sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMillis);
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.queuedFramesGauge = Gauge.builder("collaboraid.websocket.outbound.queued.frames", this, SlowConsumerSessionDecorator::queuedFrames)
+                .tag("session", session.getId())
+                .register(meterRegistry);
+        this.queuedBytesGauge = Gauge.builder("collaboraid.websocket.outbound.queued.bytes", this, SlowConsumerSessionDecorator::queuedBytes)
+                .tag("session", session.getId())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        if (closing) {
+            return; // the client resumes from its last sequence / version after reconnecting
+        }
+        Frame frame = Frame.of(message);
+        boolean startDrain = false;
+        synchronized (pending) {
+            pending.addLast(frame);
+            bufferedBytes += frame.size;
+            if (bufferedBytes > bufferSizeLimit) {
+                shed();
+            }
+            long started = sendStartedAt;
+            if (bufferedBytes > bufferSizeLimit) {
+                closeResumable("buffer");
+                return;
+            }
+            if (started != 0 && System.nanoTime() - started > sendTimeLimitNanos) {
+                closeResumable("send_time");
+                return;
+            }
+            if (!draining) {
+                draining = true;
+                startDrain = true;
+            }
+        }
+        if (startDrain) {
+            executor.execute(this::drain);
+        }
+    }
+
+    // Called by the handler decorator once the connection is gone
+    void release() {
+        closing = true;
+        synchronized (pending) {
+            pending.clear();
+            bufferedBytes = 0;
+        }
+        meterRegistry.remove(queuedFramesGauge);
+        meterRegistry.remove(queuedBytesGauge);
+    }
+
+    private void drain() {
+        while (true) {
+            Frame next;
+            synchronized (pending) {
+                next = pending.pollFirst();
+                if (next == null || closing) {
+                    draining = false;
+                    return;
+                }
+                bufferedBytes -= next.size;
+            }
+            sendStartedAt = System.nanoTime();
+            try {
+                getDelegate().sendMessage(next.message);
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Outbound write to session {} failed: {}", getId(), e.getMessage());
+                synchronized (pending) {
+                    pending.clear();
+                    bufferedBytes = 0;
+                    draining = false;
+                }
+                return;
+            } finally {
+                sendStartedAt = 0;
+            }
+        }
+    }
+
+    // Caller holds the lock. Walks newest to oldest so the newest notification per destination is the one kept.
+    private void shed() {
+        Set<String> coalesced = new HashSet<>();
+        int dropped = 0;
+        int merged = 0;
+        Iterator<Frame> frames = pending.descendingIterator();
+        while (frames.hasNext()) {
+            Frame frame = frames.next();
+            if (frame.policy == OutboundPolicy.DROP) {
+                dropped++;
+            } else if (frame.policy == OutboundPolicy.COALESCE && !coalesced.add(frame.destination)) {
+                merged++;
+            } else {
+                continue;
+            }
+            frames.remove();
+            bufferedBytes -= frame.size;
+        }
+        if (dropped > 0) {
+            meterRegistry.counter("collaboraid.websocket.outbound.shed", "policy", "drop").increment(dropped);
+        }
+        if (merged > 0) {
+            meterRegistry.counter("collaboraid.websocket.outbound.shed", "policy", "coalesce").increment(merged);
+        }
+    }
+
+    // Caller holds the lock
+    private void closeResumable(String reason) {
+        closing = true;
+        logger.info("Closing slow WebSocket session {} ({}, {} bytes queued)", getId(), reason, bufferedBytes);
+        meterRegistry.counter("collaboraid.websocket.slow_consumer.disconnects", "reason", reason).increment();
+        pending.clear();
+        bufferedBytes = 0;
+        // Off the caller's thread: closing may wait behind the stuck write
+        executor.execute(() -> {
+            try {
+                getDelegate().close(RESUMABLE);
+            } catch (IOException e) {
+                logger.debug("Could not close session {}: {}", getId(), e.getMessage());
+            }
+        });
+    }
+
+    private int queuedFrames() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    private long queuedBytes() {
+        synchronized (pending) {
+            return bufferedBytes;
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+
+    private record Frame(WebSocketMessage<?> message, String destination, OutboundPolicy policy, int size) {
+
+        static Frame of(WebSocketMessage<?> message) {
+            String destination = message instanceof TextMessage text ? destination(text.getPayload()) : null;
+            // Binary frames are not inspected, so they get the safe policy
+            OutboundPolicy policy = message instanceof BinaryMessage || destination == null
+                    ? OutboundPolicy.KEEP : OutboundPolicy.forDestination(destination);
+            return new Frame(message, destination, policy, message.getPayloadLength());
+        }
+
+        // The destination header of a STOMP MESSAGE frame; null for CONNECTED, RECEIPT, ERROR and heartbeats
+        private static String destination(String frame) {
+            if (!frame.startsWith("MESSAGE\n")) {
+                return null;
+            }
+            int headersEnd = frame.indexOf("\n\n");
+            int start = frame.indexOf("\ndestination:");
+            if (start < 0 || (headersEnd >= 0 && start > headersEnd)) {
+                return null;
+            }
+            start += "\ndestination:".length();
+            int end = frame.indexOf('\n', start);
+            return end < 0 ? frame.substring(start) : frame.substring(start, end);
+        }
+    }
+}
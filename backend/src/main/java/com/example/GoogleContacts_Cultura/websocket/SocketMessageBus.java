@@ -0,0 +1,282 @@
+package com.example.GoogleContacts_Cultura.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// Cross-node fan-out over plain TCP between JVMs (collaboraid.bus.mode=socket). Every node delivers to its own
+// broker, and relays a send to a peer only if that peer has announced a subscriber for the destination.
+// Each node dials every configured peer and uses that connection to announce its own interest (SUB/UNSUB) and
+// to relay messages; what it accepts on its own port is the peers' interest and their relayed messages.
+// Frames are one JSON object per line. Peers must list each other by the same host:port they use as node id.
+@Service
+@ConditionalOnProperty(name = "collaboraid.bus.mode", havingValue = "socket")
+public class SocketMessageBus implements MessageBus, StompSubscriptionTracker.Listener {
+
+    private static final Logger logger = LoggerFactory.getLogger(SocketMessageBus.class);
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 5000;
+    private static final int PEER_QUEUE_CAPACITY = 10_000;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final StompSubscriptionTracker subscriptions;
+    private final ObjectMapper objectMapper;
+    private final String host;
+    private final int port;
+    private final String nodeId;
+    private final List<String> peerAddresses;
+
+    // Peer node id -> destinations it has subscribers for, as announced over its connection to us
+    private final Map<String, Set<String>> remoteInterest = new ConcurrentHashMap<>();
+    private final List<Peer> peers = new ArrayList<>();
+
+    private volatile boolean running;
+    private ServerSocket serverSocket;
+
+    public SocketMessageBus(SimpMessagingTemplate messagingTemplate,
+                            StompSubscriptionTracker subscriptions,
+                            ObjectMapper objectMapper,
+                            @Value("${collaboraid.bus.host:127.0.0.1}") String host,
+                            @Value("${collaboraid.bus.port:9190}") int port,
+                            @Value("${collaboraid.bus.peers:}") String peers) {
+        this.messagingTemplate = messagingTemplate;
+        this.subscriptions = subscriptions;
+        this.objectMapper = objectMapper;
+        this.host = host;
+        this.port = port;
+        this.nodeId = host + ":" + port;
+        this.peerAddresses = new ArrayList<>();
+        for (String peer : peers.split(",")) {
+            if (!peer.isBlank() && !peer.trim().equals(nodeId)) {
+                peerAddresses.add(peer.trim());
+            }
+        }
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        running = true;
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getByName(host), port));
+        startThread("message-bus-accept", this::acceptLoop);
+        for (String address : peerAddresses) {
+            Peer peer = new Peer(address);
+            peers.add(peer);
+            startThread("message-bus-peer-" + address, peer::run);
+        }
+        subscriptions.addListener(this);
+        logger.info("Socket message bus {} listening, peers {}", nodeId, peerAddresses);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        running = false;
+        serverSocket.close();
+        peers.forEach(Peer::close);
+    }
+
+    @Override
+    public void convertAndSend(String destination, Object payload) {
+        messagingTemplate.convertAndSend(destination, payload);
+
+        JsonNode body = null;
+        for (Peer peer : peers) {
+            Set<String> interest = remoteInterest.get(peer.address);
+            if (interest != null && interest.contains(destination)) {
+                if (body == null) {
+                    body = objectMapper.valueToTree(payload); // serialized once, only if some peer wants it
+                }
+                peer.send(new Frame(Frame.MSG, null, destination, body));
+            }
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+    // Our interest, announced to every peer. Both callbacks re-read the tracker so the last frame sent for a
+    // destination always matches its current state, whatever order concurrent callbacks arrive in.
+
+    @Override
+    public void onFirstSubscriber(String destination) {
+        announce(destination);
+    }
+
+    @Override
+    public void onLastSubscriberGone(String destination) {
+        announce(destination);
+    }
+
+    private synchronized void announce(String destination) {
+        String type = subscriptions.hasSubscribers(destination) ? Frame.SUB : Frame.UNSUB;
+        for (Peer peer : peers) {
+            peer.send(new Frame(type, null, destination, null));
+        }
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+    // Inbound: peers' interest and relayed messages
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                startThread("message-bus-inbound", () -> readPeer(socket));
+            } catch (IOException e) {
+                if (running) {
+                    logger.warn("Message bus accept failed", e);
+                }
+            }
+        }
+    }
+
+    private void readPeer(Socket socket) {
+        String peerId = null;
+        Set<String> interest = null;
+        try (socket; BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Frame frame = objectMapper.readValue(line, Frame.class);
+                switch (frame.type()) {
+                    case Frame.HELLO -> {
+                        peerId = frame.node();
+                        interest = ConcurrentHashMap.newKeySet(); // the peer re-announces everything next
+                        remoteInterest.put(peerId, interest);
+                    }
+                    case Frame.SUB -> requireHello(interest).add(frame.destination());
+                    case Frame.UNSUB -> requireHello(interest).remove(frame.destination());
+                    // Delivered locally only, never relayed again, so frames cannot loop between nodes
+                    case Frame.MSG -> messagingTemplate.convertAndSend(frame.destination(), frame.payload());
+                    default -> logger.warn("Unknown message bus frame {}", frame.type());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (running) {
+                logger.warn("Message bus connection from {} closed", peerId != null ? peerId : socket.getRemoteSocketAddress(), e);
+            }
+        } finally {
+            if (peerId != null) {
+                remoteInterest.remove(peerId, interest); // unless the peer has already reconnected
+            }
+        }
+    }
+
+    private static Set<String> requireHello(Set<String> interest) {
+        if (interest == null) {
+            throw new IllegalStateException("Message bus frame before HELLO");
+        }
+        return interest;
+    }
+
+    private static void startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    //------------------------------------------------------------------------------------------------------------------
+    // Outbound: one connection per configured peer, redialled with backoff
+
+    private class Peer {
+        private final String address;
+        private final BlockingQueue<Frame> outbox = new LinkedBlockingQueue<>(PEER_QUEUE_CAPACITY);
+        private volatile Socket socket;
+
+        Peer(String address) {
+            this.address = address;
+        }
+
+        void send(Frame frame) {
+            if (!outbox.offer(frame)) {
+                logger.warn("Message bus outbox for {} is full, dropping {} to {}", address, frame.type(), frame.destination());
+            }
+        }
+
+        void run() {
+            long delay = 100;
+            while (running) {
+                String[] hostAndPort = address.split(":");
+                try (Socket connection = new Socket()) {
+                    connection.connect(new InetSocketAddress(hostAndPort[0], Integer.parseInt(hostAndPort[1])), CONNECT_TIMEOUT_MILLIS);
+                    connection.setTcpNoDelay(true);
+                    socket = connection;
+                    BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8));
+                    write(writer, new Frame(Frame.HELLO, nodeId, null, null));
+                    for (String destination : subscriptions.destinations()) {
+                        write(writer, new Frame(Frame.SUB, null, destination, null));
+                    }
+                    writer.flush();
+                    delay = 100;
+                    while (running) {
+                        write(writer, outbox.take());
+                        if (outbox.isEmpty()) {
+                            writer.flush(); // flush per burst, not per frame
+                        }
+                    }
+                } catch (IOException e) {
+                    logger.debug("Message bus peer {} unavailable: {}", address, e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                sleep(delay);
+                delay = Math.min(delay * 2, MAX_RECONNECT_DELAY_MILLIS);
+            }
+        }
+
+        void close() {
+            Socket current = socket;
+            if (current != null) {
+                try {
+                    current.close();
+                } catch (IOException ignored) {
+                    // shutting down
+                }
+            }
+        }
+
+        private void write(BufferedWriter writer, Frame frame) throws IOException {
+            writer.write(objectMapper.writeValueAsString(frame));
+            writer.write('\n');
+        }
+
+        private void sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    record Frame(String type, String node, String destination, JsonNode payload) {
+        static final String HELLO = "HELLO";
+        static final String SUB = "SUB";
+        static final String UNSUB = "UNSUB";
+        static final String MSG = "MSG";
+    }
+}
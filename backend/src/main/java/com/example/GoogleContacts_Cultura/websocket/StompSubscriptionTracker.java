@@ -0,0 +1,114 @@
+package com.example.GoogleContacts_Cultura.websocket;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Which destinations this node currently has STOMP subscribers for, reference counted across sessions.
+// User destinations are keyed the way they are sent (/user/{name}/queue/...), so a send can be matched exactly.
+@Component
+public class StompSubscriptionTracker {
+
+    public interface Listener {
+        void onFirstSubscriber(String destination);
+
+        void onLastSubscriberGone(String destination);
+    }
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // sessionId -> subscriptionId -> destination key; guarded by this
+    private final Map<String, Map<String, String>> sessions = new HashMap<>();
+    private final Map<String, Integer> subscriberCounts = new HashMap<>();
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public synchronized Set<String> destinations() {
+        return Set.copyOf(subscriberCounts.keySet());
+    }
+
+    public synchronized boolean hasSubscribers(String destination) {
+        return subscriberCounts.containsKey(destination);
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String destination = key(headers.getDestination(), event.getUser());
+        if (destination == null || headers.getSessionId() == null || headers.getSubscriptionId() == null) {
+            return;
+        }
+        boolean first;
+        synchronized (this) {
+            String previous = sessions.computeIfAbsent(headers.getSessionId(), id -> new HashMap<>())
+                    .put(headers.getSubscriptionId(), destination);
+            if (previous != null) {
+                release(previous); // subscription id reused by the client
+            }
+            first = subscriberCounts.merge(destination, 1, Integer::sum) == 1;
+        }
+        if (first) {
+            listeners.forEach(listener -> listener.onFirstSubscriber(destination));
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String gone;
+        synchronized (this) {
+            Map<String, String> subscriptions = sessions.get(headers.getSessionId());
+            String destination = subscriptions == null ? null : subscriptions.remove(headers.getSubscriptionId());
+            gone = destination != null && release(destination) ? destination : null;
+        }
+        if (gone != null) {
+            listeners.forEach(listener -> listener.onLastSubscriberGone(gone));
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        List<String> gone;
+        synchronized (this) {
+            Map<String, String> subscriptions = sessions.remove(event.getSessionId());
+            if (subscriptions == null) {
+                return;
+            }
+            gone = subscriptions.values().stream().filter(this::release).toList();
+        }
+        for (String destination : gone) {
+            listeners.forEach(listener -> listener.onLastSubscriberGone(destination));
+        }
+    }
+
+    // Caller holds the lock; true when this was the last subscriber
+    private boolean release(String destination) {
+        Integer remaining = subscriberCounts.computeIfPresent(destination, (key, count) -> count > 1 ? count - 1 : null);
+        return remaining == null;
+    }
+
+    private static String key(String destination, Principal user) {
+        if (destination == null) {
+            return null;
+        }
+        if (destination.startsWith("/user/")) {
+            if (user == null) {
+                return null; // unresolvable user destination, nothing can be sent to it
+            }
+            return MessageBus.userDestination(user.getName(), destination.substring("/user".length()));
+        }
+        return destination;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import com.example.GoogleContacts_Cultura.DTO.MessageDTO;
+import com.example.GoogleContacts_Cultura.entity.MessageEntity;
+import com.example.GoogleContacts_Cultura.entity.UserEntity;
+import com.example.GoogleContacts_Cultura.model.Role;
+import com.example.GoogleContacts_Cultura.repository.MessageRepo;
+import com.example.GoogleContacts_Cultura.repository.UserRepo;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Loading a conversation must cost the same number of statements for 5 messages as for 200
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class MessageQueryCountTests {
+
+	@Autowired
+	private MessageService messageService;
+
+	@Autowired
+	private MessageRepo messageRepo;
+
+	@Autowired
+	private UserRepo userRepo;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Test
+	void conversationLoadsInConstantStatements() {
+		String run = Long.toString(System.nanoTime());
+		UserEntity admin = userRepo.save(newUser("admin-" + run, Role.ADMIN));
+		UserEntity user = userRepo.save(newUser("user-" + run, Role.USER));
+		List<MessageEntity> saved = new ArrayList<>();
+		try {
+			saved.addAll(sendMessages(admin, user, 5));
+			long small = statementsFor(() -> assertEquals(5, messageService.getFullConversationBetween(admin.getId(), user.getId()).size()));
+
+			saved.addAll(sendMessages(admin, user, 195));
+			long large = statementsFor(() -> assertEquals(200, messageService.getFullConversationBetween(admin.getId(), user.getId()).size()));
+
+			assertEquals(1, small);
+			assertEquals(small, large);
+
+			long single = statementsFor(() -> {
+				MessageDTO message = messageService.getMessageById(saved.get(0).getMessageId());
+				assertEquals(admin.getUsername(), message.getSenderUsername());
+				assertEquals(user.getUsername(), message.getReceiverUsername());
+			});
+			assertEquals(1, single);
+		} finally {
+			messageRepo.deleteAll(saved);
+			userRepo.delete(user);
+			userRepo.delete(admin);
+		}
+	}
+
+	private List<MessageEntity> sendMessages(UserEntity admin, UserEntity user, int count) {
+		List<MessageEntity> messages = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			boolean fromAdmin = i % 2 == 0;
+			messages.add(new MessageEntity(fromAdmin ? admin : user, fromAdmin ? user : admin, "message " + i, LocalDateTime.now()));
+		}
+		return messageRepo.saveAll(messages);
+	}
+
+	private long statementsFor(Runnable action) {
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		action.run();
+		return statistics.getPrepareStatementCount();
+	}
+
+	private static UserEntity newUser(String username, Role role) {
+		return new UserEntity(null, username, "secret", username + "@test.local", role, "ACTIVE", null, null);
+	}
+}
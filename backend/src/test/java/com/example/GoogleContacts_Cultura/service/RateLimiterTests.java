@@ -0,0 +1,100 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import com.example.GoogleContacts_Cultura.model.RateLimitPolicy;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Plain unit test: RateLimiter needs nothing from the application context
+class RateLimiterTests {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final RateLimiter rateLimiter = new RateLimiter(new MockEnvironment()
+			.withProperty("collaboraid.rate-limit.chat.requests", "10")
+			.withProperty("collaboraid.rate-limit.chat.period-seconds", "1")
+			.withProperty("collaboraid.rate-limit.chat.burst", "5"));
+
+	@Test
+	void burstIsAllowedThenTheSustainedRate() {
+		long now = 1_000 * SECOND;
+		for (int i = 0; i < 5; i++) {
+			assertEquals(0, rateLimiter.tryAcquire(RateLimitPolicy.CHAT, 42, now));
+		}
+		long wait = rateLimiter.tryAcquire(RateLimitPolicy.CHAT, 42, now);
+		assertEquals(SECOND / 10, wait);
+		assertEquals(1, RateLimiter.retryAfterSeconds(wait));
+
+		// Another user and another policy have their own buckets
+		assertEquals(0, rateLimiter.tryAcquire(RateLimitPolicy.CHAT, 43, now));
+		assertEquals(0, rateLimiter.tryAcquire(RateLimitPolicy.AI, 42, now));
+
+		// One token back after one interval, a full burst after the whole bucket has refilled
+		assertEquals(0, rateLimiter.tryAcquire(RateLimitPolicy.CHAT, 42, now + wait));
+		assertTrue(rateLimiter.tryAcquire(RateLimitPolicy.CHAT, 42, now + wait) > 0);
+		long refilled = now + SECOND;
+		for (int i = 0; i < 5; i++) {
+			assertEquals(0, rateLimiter.tryAcquire(RateLimitPolicy.CHAT, 42, refilled));
+		}
+	}
+
+	@Test
+	void manyKeysKeepTheirOwnState() {
+		long now = 1_000 * SECOND;
+		for (long user = 1; user <= 100_000; user++) {
+			assertEquals(0, rateLimiter.tryAcquire(RateLimitPolicy.CHAT, user, now));
+		}
+		// Drain one user completely while the tables are large, then check others were not disturbed
+		for (int i = 0; i < 4; i++) {
+			assertEquals(0, rateLimiter.tryAcquire(RateLimitPolicy.CHAT, 77_777, now));
+		}
+		assertTrue(rateLimiter.tryAcquire(RateLimitPolicy.CHAT, 77_777, now) > 0);
+		assertEquals(0, rateLimiter.tryAcquire(RateLimitPolicy.CHAT, 77_778, now));
+	}
+
+	// Benchmark: the check itself must stay well under a microsecond, single threaded and contended. Wall-clock
+	// bound, so it only runs on request: -Dcollaboraid.benchmarks=true
+	@Test
+	@Tag("benchmark")
+	@EnabledIfSystemProperty(named = "collaboraid.benchmarks", matches = "true")
+	void checkCostsLessThanAMicrosecond() throws Exception {
+		int users = 10_000;
+		int iterations = 2_000_000;
+		measure(users, iterations); // warm-up, lets the JIT compile the hot path
+
+		double singleThreaded = measure(users, iterations);
+		assertTrue(singleThreaded < 1_000, "single-threaded check took " + singleThreaded + " ns");
+
+		int threads = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+		Thread[] workers = new Thread[threads];
+		double[] results = new double[threads];
+		for (int t = 0; t < threads; t++) {
+			int worker = t;
+			workers[t] = new Thread(() -> results[worker] = measure(users, iterations / threads));
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		for (int t = 0; t < threads; t++) {
+			assertTrue(results[t] < 1_000, "contended check took " + results[t] + " ns");
+		}
+	}
+
+	private double measure(int users, int iterations) {
+		long blackhole = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			blackhole += rateLimiter.tryAcquire(RateLimitPolicy.CHAT, 1 + (i * 7919L) % users);
+		}
+		long elapsed = System.nanoTime() - start;
+		assertTrue(blackhole >= 0);
+		return (double) elapsed / iterations;
+	}
+}
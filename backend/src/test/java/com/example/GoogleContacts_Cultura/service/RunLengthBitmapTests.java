@@ -0,0 +1,57 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Plain unit test of the read-state bitmap behind BroadcastReadState
+class RunLengthBitmapTests {
+
+	@Test
+	void rangesMergeIntoRuns() {
+		RunLengthBitmap bitmap = new RunLengthBitmap();
+		assertTrue(bitmap.addRange(10, 20));
+		assertTrue(bitmap.add(30));
+		assertTrue(bitmap.add(21)); // touches the first run
+		assertFalse(bitmap.addRange(12, 18));
+		assertEquals(2, bitmap.runCount());
+		assertTrue(bitmap.addRange(0, 29)); // bridges everything into one run
+		assertEquals(1, bitmap.runCount());
+		assertEquals(0, bitmap.start(0));
+		assertEquals(30, bitmap.end(0));
+		assertTrue(bitmap.contains(30));
+		assertFalse(bitmap.contains(31));
+	}
+
+	@Test
+	void matchesABitSetAndSurvivesSerialization() {
+		Random random = new Random(7);
+		RunLengthBitmap bitmap = new RunLengthBitmap();
+		BitSet expected = new BitSet();
+		for (int i = 0; i < 2_000; i++) {
+			int from = random.nextInt(100_000);
+			int to = from + random.nextInt(random.nextBoolean() ? 1 : 200);
+			bitmap.addRange(from, to);
+			expected.set(from, to + 1);
+		}
+		RunLengthBitmap copy = RunLengthBitmap.fromBytes(bitmap.toBytes());
+		assertEquals(bitmap.runCount(), copy.runCount());
+		for (int value = 0; value < 100_300; value++) {
+			assertEquals(expected.get(value), bitmap.contains(value));
+			assertEquals(expected.get(value), copy.contains(value));
+		}
+
+		RunLengthBitmap merged = new RunLengthBitmap();
+		merged.add(5);
+		merged.or(copy);
+		expected.set(5);
+		for (int value = 0; value < 100_300; value++) {
+			assertEquals(expected.get(value), merged.contains(value));
+		}
+	}
+}
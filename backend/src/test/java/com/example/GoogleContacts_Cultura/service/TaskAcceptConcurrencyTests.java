@@ -0,0 +1,128 @@
+package com.example.GoogleContacts_Cultura.service;
+
+import com.example.GoogleContacts_Cultura.entity.TaskEntity;
+import com.example.GoogleContacts_Cultura.entity.UserEntity;
+import com.example.GoogleContacts_Cultura.model.Category;
+import com.example.GoogleContacts_Cultura.model.Role;
+import com.example.GoogleContacts_Cultura.model.TaskStatus;
+import com.example.GoogleContacts_Cultura.repository.NotificationOutboxRepo;
+import com.example.GoogleContacts_Cultura.repository.NotificationRepo;
+import com.example.GoogleContacts_Cultura.repository.TaskRepo;
+import com.example.GoogleContacts_Cultura.repository.UserRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+class TaskAcceptConcurrencyTests {
+
+	private static final int ACCEPTORS = 200;
+
+	@Autowired
+	private TaskService taskService;
+
+	@Autowired
+	private TaskRepo taskRepo;
+
+	@Autowired
+	private UserRepo userRepo;
+
+	@Autowired
+	private NotificationRepo notificationRepo;
+
+	@Autowired
+	private NotificationOutboxRepo notificationOutboxRepo;
+
+	@Test
+	void onlyOneOfManyParallelAcceptsWins() throws Exception {
+		String run = Long.toString(System.nanoTime());
+		UserEntity poster = userRepo.save(newUser("poster-" + run));
+		List<UserEntity> acceptors = new ArrayList<>();
+		for (int i = 0; i < ACCEPTORS; i++) {
+			acceptors.add(newUser("acceptor-" + run + "-" + i));
+		}
+		acceptors = userRepo.saveAll(acceptors);
+
+		TaskEntity task = new TaskEntity();
+		task.setTitle("Contended task " + run);
+		task.setDescription("Accepted by exactly one user");
+		task.setStatus(TaskStatus.OPEN);
+		task.setCategory(Category.PROGRAMMING);
+		task.setUser(poster);
+		Long taskId = taskRepo.save(task).getId();
+
+		ExecutorService executor = Executors.newFixedThreadPool(32);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			AtomicInteger accepted = new AtomicInteger();
+			AtomicInteger conflicts = new AtomicInteger();
+			AtomicLong winner = new AtomicLong();
+			List<Future<?>> futures = new ArrayList<>();
+
+			for (UserEntity acceptor : acceptors) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					try {
+						taskService.acceptTask(taskId, acceptor.getId());
+						accepted.incrementAndGet();
+						winner.set(acceptor.getId());
+					} catch (ResponseStatusException e) {
+						if (e.getStatusCode() == HttpStatus.CONFLICT) {
+							conflicts.incrementAndGet();
+						} else {
+							throw e;
+						}
+					}
+					return null;
+				}));
+			}
+
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(60, TimeUnit.SECONDS);
+			}
+
+			assertEquals(1, accepted.get());
+			assertEquals(ACCEPTORS - 1, conflicts.get());
+
+			TaskEntity reloaded = taskRepo.findById(taskId).orElseThrow();
+			assertEquals(TaskStatus.IN_PROGRESS, reloaded.getStatus());
+			assertEquals(winner.get(), reloaded.getAcceptedBy().getId());
+		} finally {
+			executor.shutdownNow();
+			taskRepo.deleteById(taskId);
+			awaitOutboxDrained(poster.getId());
+			notificationRepo.deleteAll(notificationRepo.findByUserId(poster.getId()));
+			userRepo.deleteAll(acceptors);
+			userRepo.delete(poster);
+		}
+	}
+
+	// The accept notification reaches notification_entity through the outbox. Once the dispatcher has moved it
+	// (same transaction as the outbox delete) it can be cleaned up; anything still waiting is deleted outright.
+	private void awaitOutboxDrained(Long recipientId) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while (!notificationOutboxRepo.findByRecipientId(recipientId).isEmpty() && System.nanoTime() < deadline) {
+			Thread.sleep(100);
+		}
+		notificationOutboxRepo.deleteAll(notificationOutboxRepo.findByRecipientId(recipientId));
+	}
+
+	private static UserEntity newUser(String username) {
+		return new UserEntity(null, username, "secret", username + "@test.local", Role.USER, "ACTIVE", null, null);
+	}
+}